@@ -0,0 +1,95 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import com.rabbitmq.actions.DeleteReleaseAction.GitubRestApiReleaseAccess;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Decoding of release listing pages, with the fields GitHub returns for each release. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReleaseDecodingBenchmark {
+
+  @Param({"1000", "10000", "100000"})
+  int size;
+
+  byte[] page;
+
+  @Setup
+  public void setUp() {
+    page = page(size).getBytes(StandardCharsets.UTF_8);
+  }
+
+  static String page(int size) {
+    StringBuilder json = new StringBuilder("[");
+    for (int i = 0; i < size; i++) {
+      String tag = "v-stream-perf-test-0." + (i % 20) + ".0-SNAPSHOT-" + i;
+      String url =
+          "https://api.github.com/repos/rabbitmq/rabbitmq-java-tools-binaries-dev/releases/" + i;
+      String date = Instant.ofEpochSecond(1_600_000_000L + i * 60L).toString();
+      json.append(i == 0 ? "" : ",")
+          .append("{\"url\":\"")
+          .append(url)
+          .append("\",")
+          .append("\"assets_url\":\"")
+          .append(url)
+          .append("/assets\",")
+          .append("\"id\":")
+          .append(i)
+          .append(',')
+          .append("\"author\":{\"login\":\"rabbitmq-ci\",\"id\":71012429,")
+          .append("\"node_id\":\"MDQ6VXNlcjcxMDEyNDI5\",\"type\":\"User\",\"site_admin\":false},")
+          .append("\"node_id\":\"MDc6UmVsZWFzZTM5MDQ1MzA2\",")
+          .append("\"tag_name\":\"")
+          .append(tag)
+          .append("\",")
+          .append("\"target_commitish\":\"main\",")
+          .append("\"name\":\"")
+          .append(tag.substring(2))
+          .append("\",")
+          .append("\"draft\":false,\"prerelease\":true,")
+          .append("\"created_at\":\"")
+          .append(date)
+          .append("\",")
+          .append("\"published_at\":\"")
+          .append(date)
+          .append("\",")
+          .append("\"assets\":[{\"id\":")
+          .append(i)
+          .append(",\"name\":\"")
+          .append(tag)
+          .append(".jar\",\"size\":21,\"download_count\":2,")
+          .append("\"uploader\":{\"login\":\"rabbitmq-ci\",\"id\":71012429}}],")
+          .append("\"body\":\"Snapshot build of the main branch.\"}");
+    }
+    return json.append(']').toString();
+  }
+
+  @Benchmark
+  public void decode(Blackhole blackhole) throws IOException {
+    GitubRestApiReleaseAccess.decode(new ByteArrayInputStream(page), blackhole::consume);
+  }
+}
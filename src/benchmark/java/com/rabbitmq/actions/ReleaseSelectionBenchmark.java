@@ -0,0 +1,94 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import com.rabbitmq.actions.DeleteReleaseAction.Release;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Filtering, retention and sorting of listed releases. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReleaseSelectionBenchmark {
+
+  static final String TAG_REGEX = "^v-stream-perf-test-0.[0-9]+.0-SNAPSHOT-[0-9]{8}-[0-9]{6}$";
+  static final String NAME_REGEX = "^stream-perf-test-0.[0-9]+.0-SNAPSHOT-[0-9]{8}-[0-9]{6}$";
+
+  @Param({"1000", "10000", "100000"})
+  int size;
+
+  List<Release> releases;
+
+  @Setup
+  public void setUp() {
+    releases = releases(size);
+  }
+
+  /** Releases in random order, 3 out of 4 match the filters. */
+  static List<Release> releases(int size) {
+    Random random = new Random(42);
+    long start = 1_600_000_000L;
+    List<Release> releases = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      String version =
+          "0." + (i % 20) + ".0-SNAPSHOT-20240101-" + String.format("%06d", i % 1_000_000);
+      String prefix = i % 4 == 0 ? "other-tool-" : "stream-perf-test-";
+      releases.add(
+          new Release(
+              i,
+              "https://api.github.com/repos/rabbitmq/rabbitmq-java-tools-binaries-dev/releases/"
+                  + i,
+              start + i * 60L,
+              "v-" + prefix + version,
+              prefix + version));
+    }
+    Collections.shuffle(releases, random);
+    return releases;
+  }
+
+  @Benchmark
+  public List<Release> filter() {
+    return DeleteReleaseAction.filter(releases, TAG_REGEX, NAME_REGEX);
+  }
+
+  @Benchmark
+  public List<Release> filterForDeletion() {
+    return DeleteReleaseAction.filterForDeletion(releases, 10);
+  }
+
+  @Benchmark
+  public List<Release> releaseTableRetention() {
+    ReleaseTable table = new ReleaseTable();
+    ReleaseTable.Retention retention = table.new Retention(10);
+    releases.forEach(r -> retention.add(table.add(r)));
+    return table.releases(table.sortedByPublication(retention.deletionCandidates()));
+  }
+
+  @Benchmark
+  public List<Release> sortByPublication() {
+    List<Release> copy = new ArrayList<>(releases);
+    DeleteReleaseAction.sortByPublication(copy);
+    return copy;
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static com.rabbitmq.actions.Utils.logGreen;
+import static com.rabbitmq.actions.Utils.logYellow;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the number of requests in flight with additive increase, multiplicative decrease (AIMD).
+ *
+ * <p>Each successful request adds <code>1 / limit</code> to the limit, so the limit grows by 1 when
+ * a full window of requests succeeds. A throttled request (rate limit status, secondary rate limit
+ * message) halves the limit, a latency spike compared to the average latency of the successful
+ * requests reduces it by a smaller factor. Requests that started before the last decrease do not
+ * decrease the limit again, they belong to the window that has already been reduced.
+ */
+class AdaptiveLimiter {
+
+  private static final double THROTTLED_DECREASE = 0.5;
+  private static final double LATENCY_DECREASE = 0.8;
+  // a latency above this ratio of the average is a spike
+  private static final double LATENCY_SPIKE_RATIO = 3.0;
+  private static final double LATENCY_AVERAGE_WEIGHT = 0.1;
+  // samples before latency spikes are detected
+  private static final int LATENCY_WARMUP = 10;
+
+  private final String name;
+  private final int maxLimit;
+  private final LongSupplier nanoClock;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition available = lock.newCondition();
+  private double limit = 1;
+  private int inFlight;
+  private long lastDecrease = Long.MIN_VALUE;
+  private double averageLatency;
+  private int latencySamples;
+
+  /**
+   * @param name what the limit is for, for the log lines
+   */
+  AdaptiveLimiter(String name, int maxLimit) {
+    this(name, maxLimit, System::nanoTime);
+  }
+
+  AdaptiveLimiter(String name, int maxLimit, LongSupplier nanoClock) {
+    this.name = name;
+    this.maxLimit = maxLimit;
+    this.nanoClock = nanoClock;
+  }
+
+  /** Waits until a request can go, the permit must be released once the request is done. */
+  Permit acquire() throws InterruptedException {
+    lock.lock();
+    try {
+      while (inFlight >= (int) limit) {
+        available.await();
+      }
+      inFlight++;
+      return new Permit(nanoClock.getAsLong());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  int limit() {
+    lock.lock();
+    try {
+      return (int) limit;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  int inFlight() {
+    lock.lock();
+    try {
+      return inFlight;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void decrease(Permit permit, double factor, String reason) {
+    lock.lock();
+    try {
+      if (permit.start < lastDecrease) {
+        return;
+      }
+      lastDecrease = nanoClock.getAsLong();
+      int previous = (int) limit;
+      limit = Math.max(1, limit * factor);
+      if ((int) limit != previous) {
+        logYellow("%s concurrency limit decreased to %d (%s).", name, (int) limit, reason);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void success(Permit permit, long latencyNanos) {
+    lock.lock();
+    try {
+      if (latencySamples >= LATENCY_WARMUP && latencyNanos > averageLatency * LATENCY_SPIKE_RATIO) {
+        decrease(
+            permit,
+            LATENCY_DECREASE,
+            String.format(
+                "latency spike, %d ms, average %d ms",
+                TimeUnit.NANOSECONDS.toMillis(latencyNanos),
+                TimeUnit.NANOSECONDS.toMillis((long) averageLatency)));
+        return;
+      }
+      averageLatency =
+          latencySamples == 0
+              ? latencyNanos
+              : averageLatency + LATENCY_AVERAGE_WEIGHT * (latencyNanos - averageLatency);
+      latencySamples++;
+      int previous = (int) limit;
+      limit = Math.min(maxLimit, limit + 1 / limit);
+      if ((int) limit != previous) {
+        logGreen("%s concurrency limit increased to %d.", name, (int) limit);
+        available.signalAll();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void release() {
+    lock.lock();
+    try {
+      inFlight--;
+      available.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** A request in flight. */
+  class Permit implements AutoCloseable {
+
+    private final long start;
+    private boolean released;
+
+    private Permit(long start) {
+      this.start = start;
+    }
+
+    /** The request succeeded, with this latency. */
+    void succeeded(long latencyNanos) {
+      success(this, latencyNanos);
+    }
+
+    /** The request has been throttled, e.g. with a 429 response. */
+    void throttled(String reason) {
+      decrease(this, THROTTLED_DECREASE, reason);
+    }
+
+    @Override
+    public void close() {
+      if (!released) {
+        released = true;
+        release();
+      }
+    }
+  }
+}
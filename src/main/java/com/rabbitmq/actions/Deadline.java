@@ -0,0 +1,103 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+/**
+ * The end of the time budget of a run, shared by all the repositories.
+ *
+ * <p>A deletion starts only if it is expected to end before the deadline, with the average latency
+ * of the previous deletions (exponentially weighted), and a reserve to report the results. Once the
+ * deadline is close, the deletions in flight finish and the others are reported as remaining.
+ */
+class Deadline {
+
+  private static final double LATENCY_AVERAGE_WEIGHT = 0.2;
+  // time kept to verify deletions and report, at most
+  private static final Duration MAX_RESERVE = Duration.ofSeconds(10);
+  // of the budget, for short budgets
+  private static final double RESERVE_RATIO = 0.1;
+
+  private final long deadline;
+  private final long reserve;
+  private final LongSupplier nanoClock;
+  private double averageLatency;
+  private int latencySamples;
+
+  Deadline(Duration budget) {
+    this(budget, System::nanoTime);
+  }
+
+  Deadline(Duration budget, LongSupplier nanoClock) {
+    this.nanoClock = nanoClock;
+    this.deadline = nanoClock.getAsLong() + budget.toNanos();
+    this.reserve = Math.min(MAX_RESERVE.toNanos(), (long) (budget.toNanos() * RESERVE_RATIO));
+  }
+
+  /**
+   * Parses a time budget in seconds, or with an <code>s</code>, <code>m</code>, or <code>h</code>
+   * unit, e.g. <code>90</code>, <code>15m</code>.
+   */
+  static Duration parseBudget(String value) {
+    String budget = value.trim().toLowerCase(Locale.ROOT);
+    long seconds = -1;
+    try {
+      if (budget.endsWith("h")) {
+        seconds = Long.parseLong(budget.substring(0, budget.length() - 1).trim()) * 3600;
+      } else if (budget.endsWith("m")) {
+        seconds = Long.parseLong(budget.substring(0, budget.length() - 1).trim()) * 60;
+      } else if (budget.endsWith("s")) {
+        seconds = Long.parseLong(budget.substring(0, budget.length() - 1).trim());
+      } else {
+        seconds = Long.parseLong(budget);
+      }
+    } catch (NumberFormatException e) {
+      // reported below
+    }
+    if (seconds <= 0) {
+      throw new IllegalArgumentException(
+          "Parameter time-budget must be a positive duration in seconds, or with a s, m, or h unit,"
+              + " e.g. 15m");
+    }
+    return Duration.ofSeconds(seconds);
+  }
+
+  /** Whether a deletion starting now is expected to end before the deadline. */
+  synchronized boolean canStart() {
+    return nanoClock.getAsLong() + (long) averageLatency + reserve <= deadline;
+  }
+
+  /** Runs a deletion and records the time it took. */
+  void time(Runnable deletion) {
+    long start = nanoClock.getAsLong();
+    try {
+      deletion.run();
+    } finally {
+      deleted(nanoClock.getAsLong() - start);
+    }
+  }
+
+  /** Records the time a deletion took. */
+  synchronized void deleted(long latencyNanos) {
+    averageLatency =
+        latencySamples == 0
+            ? latencyNanos
+            : averageLatency + LATENCY_AVERAGE_WEIGHT * (latencyNanos - averageLatency);
+    latencySamples++;
+  }
+
+  /** The estimated time of a deletion, 0 before the first deletion. */
+  synchronized Duration deletionLatency() {
+    return Duration.ofNanos((long) averageLatency);
+  }
+
+  Duration remaining() {
+    return Duration.ofNanos(Math.max(0, deadline - nanoClock.getAsLong()));
+  }
+}
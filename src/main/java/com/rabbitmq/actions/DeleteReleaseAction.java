@@ -6,161 +6,869 @@
 package com.rabbitmq.actions;
 
 import static com.rabbitmq.actions.Utils.*;
-import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
-import com.google.gson.reflect.TypeToken;
-import java.lang.reflect.Type;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URI;
+import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpRequest.Builder;
 import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 
 public class DeleteReleaseAction {
 
-  private static final String GITHUB_API_URL =
-      System.getenv("GITHUB_API_URL") == null
-          ? "https://api.github.com"
-          : System.getenv("GITHUB_API_URL");
-  static final Gson GSON =
-      new GsonBuilder()
-          .registerTypeAdapter(ZonedDateTime.class, new ZonedDateTimeDeserializer())
-          .create();
+  static final int DEFAULT_MAX_CONCURRENCY = 1;
+  static final int DEFAULT_ADAPTIVE_MAX_CONCURRENCY = 16;
+  static final int DEFAULT_REPOSITORY_CONCURRENCY = 4;
+
+  private static final String DEFAULT_GITHUB_API_URL = "https://api.github.com";
+  private static final String DEFAULT_GITHUB_SERVER_URL = "https://github.com";
+  private static final String DEFAULT_GITHUB_GRAPHQL_URL = "https://api.github.com/graphql";
+
+  // Gson is loaded on first use, not for the test sequence or usage errors
+  private static final class GsonHolder {
+
+    private static final Gson GSON =
+        new GsonBuilder().registerTypeAdapter(Release.class, new ReleaseTypeAdapter()).create();
+  }
+
+  static Gson gson() {
+    return GsonHolder.GSON;
+  }
 
   public static void main(String[] args) {
     if (args.length == 1 && "test".equals(args[0])) {
       testSequence();
     }
+    int exitCode = run(System.getenv());
+    if (exitCode != 0) {
+      System.exit(exitCode);
+    }
+  }
+
+  /**
+   * Runs the action with the inputs and the GitHub URLs of the environment.
+   *
+   * @return the exit code of the action
+   */
+  static int run(Map<String, String> env) {
+    String githubApiUrl = env.getOrDefault("GITHUB_API_URL", DEFAULT_GITHUB_API_URL);
+    String githubServerUrl = env.getOrDefault("GITHUB_SERVER_URL", DEFAULT_GITHUB_SERVER_URL);
+    String githubGraphqlUrl = env.getOrDefault("GITHUB_GRAPHQL_URL", DEFAULT_GITHUB_GRAPHQL_URL);
+    verbose(
+        Boolean.parseBoolean(env.getOrDefault("INPUT_VERBOSE", "false").trim())
+            || "1".equals(env.get("RUNNER_DEBUG")));
+    String mode = env.get("INPUT_MODE") == null ? "run" : env.get("INPUT_MODE").trim();
+    if (!"run".equals(mode) && !"plan".equals(mode) && !"apply".equals(mode)) {
+      logRed("Parameter mode must be one of run, plan, apply");
+      return 1;
+    }
+    // apply executes a plan, it does not list nor select releases
+    boolean apply = "apply".equals(mode);
+    if (!"run".equals(mode) && env.get("INPUT_PLAN-FILE") == null) {
+      logRed("Parameter plan-file must be set with mode %s", mode);
+      return 1;
+    }
+    int[] shard = null;
+    if (env.get("INPUT_SHARD") != null) {
+      if (!apply) {
+        logRed("Parameter shard can only be used with mode apply");
+        return 1;
+      }
+      try {
+        shard = Plan.parseShard(env.get("INPUT_SHARD"));
+      } catch (IllegalArgumentException e) {
+        logRed(e.getMessage());
+        return 1;
+      }
+    }
+
     Map<String, String> envArguments = new LinkedHashMap<>();
-    envArguments.put("INPUT_REPOSITORY", "repository");
+    if (!apply) {
+      envArguments.put("INPUT_REPOSITORY", "repository");
+    }
     envArguments.put("INPUT_TOKEN", "token");
-    envArguments.put("INPUT_KEEP-LAST-N", "keep-last-n");
+    if (!apply && env.get("INPUT_POLICIES") == null) {
+      envArguments.put("INPUT_KEEP-LAST-N", "keep-last-n");
+    }
     for (Entry<String, String> entry : envArguments.entrySet()) {
       try {
-        checkParameter(entry.getKey(), entry.getValue());
+        checkParameter(env, entry.getKey(), entry.getValue());
       } catch (IllegalArgumentException e) {
         logRed(e.getMessage());
-        System.exit(1);
+        return 1;
       }
     }
 
-    if (System.getenv("INPUT_TAG-FILTER") == null && System.getenv("INPUT_NAME-FILTER") == null) {
+    List<Policy> policies;
+    if (apply) {
+      policies = List.of();
+    } else if (env.get("INPUT_POLICIES") != null) {
+      if (env.get("INPUT_TAG-FILTER") != null
+          || env.get("INPUT_NAME-FILTER") != null
+          || env.get("INPUT_KEEP-LAST-N") != null) {
+        logRed("Parameter policies cannot be used with tag-filter, name-filter, or keep-last-n");
+        return 1;
+      }
+      try {
+        policies = Policy.parse(env.get("INPUT_POLICIES"));
+      } catch (IllegalArgumentException e) {
+        logRed(e.getMessage());
+        return 1;
+      }
+    } else if (env.get("INPUT_TAG-FILTER") == null && env.get("INPUT_NAME-FILTER") == null) {
       logRed("Parameter tag-filter or name-filter must be set");
-      System.exit(1);
+      return 1;
+    } else {
+      policies =
+          List.of(
+              new Policy(
+                  env.get("INPUT_TAG-FILTER"),
+                  env.get("INPUT_NAME-FILTER"),
+                  Integer.parseInt(env.get("INPUT_KEEP-LAST-N"))));
+    }
+
+    List<String> repositoryEntries =
+        apply ? List.of() : repositoryEntries(env.get("INPUT_REPOSITORY"));
+    if (!apply
+        && (repositoryEntries.isEmpty()
+            || repositoryEntries.stream().anyMatch(r -> r.split("/").length != 2))) {
+      logRed("Parameter repository must be a list of owner/repository entries");
+      return 1;
+    }
+    String token = env.get("INPUT_TOKEN");
+    String concurrencyControl =
+        env.get("INPUT_CONCURRENCY-CONTROL") == null
+            ? "fixed"
+            : env.get("INPUT_CONCURRENCY-CONTROL").trim();
+    if (!"fixed".equals(concurrencyControl) && !"adaptive".equals(concurrencyControl)) {
+      logRed("Parameter concurrency-control must be one of fixed, adaptive");
+      return 1;
+    }
+    boolean adaptive = "adaptive".equals(concurrencyControl);
+
+    // the maximum of the adaptive limit
+    int maxConcurrency = adaptive ? DEFAULT_ADAPTIVE_MAX_CONCURRENCY : DEFAULT_MAX_CONCURRENCY;
+    if (env.get("INPUT_MAX-CONCURRENCY") != null) {
+      try {
+        maxConcurrency = Integer.parseInt(env.get("INPUT_MAX-CONCURRENCY"));
+      } catch (NumberFormatException e) {
+        maxConcurrency = 0;
+      }
+      if (maxConcurrency <= 0) {
+        logRed("Parameter max-concurrency must be a positive integer");
+        return 1;
+      }
     }
 
-    String orgRepository = System.getenv("INPUT_REPOSITORY");
-    String token = System.getenv("INPUT_TOKEN");
-    String tagFilter = System.getenv("INPUT_TAG-FILTER");
-    String nameFilter = System.getenv("INPUT_NAME-FILTER");
-    int keepLastN = Integer.parseInt(System.getenv("INPUT_KEEP-LAST-N"));
+    int repositoryConcurrency = DEFAULT_REPOSITORY_CONCURRENCY;
+    if (env.get("INPUT_REPOSITORY-CONCURRENCY") != null) {
+      try {
+        repositoryConcurrency = Integer.parseInt(env.get("INPUT_REPOSITORY-CONCURRENCY"));
+      } catch (NumberFormatException e) {
+        repositoryConcurrency = 0;
+      }
+      if (repositoryConcurrency <= 0) {
+        logRed("Parameter repository-concurrency must be a positive integer");
+        return 1;
+      }
+    }
 
-    Input input =
-        new Input(
-            new Params(tagFilter, nameFilter, keepLastN),
-            new Source(orgRepository.split("/")[0], orgRepository.split("/")[1], token));
+    Consistency consistency = Consistency.STRICT;
+    if (env.get("INPUT_CONSISTENCY") != null) {
+      try {
+        consistency = Consistency.from(env.get("INPUT_CONSISTENCY"));
+      } catch (IllegalArgumentException e) {
+        logRed(e.getMessage());
+        return 1;
+      }
+    }
 
-    ReleaseAccess access = new GitubRestApiReleaseAccess(input);
+    int rateLimitReserve = RequestScheduler.DEFAULT_RESERVE;
+    if (env.get("INPUT_RATE-LIMIT-RESERVE") != null) {
+      try {
+        rateLimitReserve = Integer.parseInt(env.get("INPUT_RATE-LIMIT-RESERVE"));
+      } catch (NumberFormatException e) {
+        rateLimitReserve = -1;
+      }
+      if (rateLimitReserve < 0) {
+        logRed("Parameter rate-limit-reserve must be a positive integer or 0");
+        return 1;
+      }
+    }
 
-    List<Release> releases = access.list();
+    String api = env.get("INPUT_API") == null ? "rest" : env.get("INPUT_API").trim();
+    if (!"rest".equals(api) && !"graphql".equals(api)) {
+      logRed("Parameter api must be one of rest, graphql");
+      return 1;
+    }
 
-    if (releases.isEmpty()) {
-      logGreen("No releases in the repository.");
+    String tagDeletion =
+        env.get("INPUT_TAG-DELETION") == null ? "api" : env.get("INPUT_TAG-DELETION").trim();
+    if (!"api".equals(tagDeletion) && !"push".equals(tagDeletion)) {
+      logRed("Parameter tag-deletion must be one of api, push");
+      return 1;
+    }
+
+    Deadline deadline = null;
+    if (env.get("INPUT_TIME-BUDGET") != null) {
+      try {
+        Duration budget = Deadline.parseBudget(env.get("INPUT_TIME-BUDGET"));
+        deadline = new Deadline(budget);
+        logGreen("Time budget: %d second(s).", budget.getSeconds());
+      } catch (IllegalArgumentException e) {
+        logRed(e.getMessage());
+        return 1;
+      }
+    }
+
+    Params params = new Params(policies, maxConcurrency, consistency, deadline);
+
+    // one scheduler, so one HTTP client and one rate limit budget, for all the repositories
+    Metrics metrics = new Metrics();
+    RequestScheduler scheduler =
+        new RequestScheduler(GitubRestApiReleaseAccess.newHttpClient(), rateLimitReserve, metrics);
+    PageCache cache = null;
+    if (env.get("INPUT_CACHE-DIRECTORY") != null) {
+      try {
+        cache = new PageCache(Path.of(env.get("INPUT_CACHE-DIRECTORY")));
+      } catch (Exception e) {
+        logYellow("Could not use cache directory, listing without cache: %s", e.getMessage());
+      }
+    }
+
+    Plan plan = null;
+    List<String> repositories;
+    if (apply) {
+      try {
+        plan = Plan.read(Path.of(env.get("INPUT_PLAN-FILE")));
+      } catch (Exception e) {
+        logRed("Could not read plan file: %s", e.getMessage());
+        return 1;
+      }
+      logGreen(
+          "Plan with %d release(s) to delete in %d repository(ies).",
+          plan.size(), plan.repositories().size());
+      if (shard != null) {
+        plan = plan.shard(shard[0], shard[1]);
+        logGreen("Shard %d/%d: %d release(s) to delete.", shard[0], shard[1], plan.size());
+      }
+      repositories = plan.repositories();
     } else {
-      List<Release> filteredReleases = filter(releases, tagFilter, nameFilter);
-      if (!filteredReleases.isEmpty()) {
-        sortByPublication(filteredReleases);
+      try {
+        repositories = resolveRepositories(repositoryEntries, scheduler, githubApiUrl, token);
+      } catch (Exception e) {
+        logRed("Error while resolving repositories: %s", e.getMessage());
+        return 1;
+      }
+      if (repositories.isEmpty()) {
+        logYellow("No repositories match %s.", String.join(", ", repositoryEntries));
+        return 0;
       }
-      List<Release> toDeleteReleases =
-          filterForDeletion(filteredReleases, input.params().keepLastN());
+    }
 
-      if (tagFilter == null) {
-        logGreen("No tag filter.");
+    PageCache pageCache = cache;
+    // one limiter for all the repositories, secondary rate limits apply to the token
+    AdaptiveLimiter deletionLimiter =
+        adaptive ? new AdaptiveLimiter("Deletion", maxConcurrency) : null;
+    Function<Input, ReleaseAccess> accessFactory =
+        input -> {
+          GitubRestApiReleaseAccess restAccess =
+              new GitubRestApiReleaseAccess(
+                  input, githubApiUrl, scheduler, pageCache, deletionLimiter);
+          ReleaseAccess access =
+              "graphql".equals(api)
+                  ? new GithubGraphQlReleaseAccess(input, githubGraphqlUrl, restAccess)
+                  : restAccess;
+          if ("push".equals(tagDeletion)) {
+            access = new GitPushReleaseAccess(access, input, githubServerUrl, scheduler);
+          }
+          return new MeteredReleaseAccess(access, metrics);
+        };
+
+    List<RepositoryResult> results;
+    if (apply) {
+      Plan toApply = plan;
+      results =
+          processRepositories(
+              repositories,
+              params,
+              token,
+              accessFactory,
+              repositoryConcurrency,
+              (input, access) ->
+                  apply(input, access, toApply.releases(repositoryName(input.source()))));
+    } else if ("plan".equals(mode)) {
+      Map<String, List<Release>> planned = new ConcurrentHashMap<>();
+      results =
+          processRepositories(
+              repositories,
+              params,
+              token,
+              accessFactory,
+              repositoryConcurrency,
+              (input, access) -> plan(input, access, planned));
+      Plan newPlan = new Plan();
+      repositories.stream()
+          .filter(planned::containsKey)
+          .forEach(r -> newPlan.add(r, planned.get(r)));
+      try {
+        newPlan.write(Path.of(env.get("INPUT_PLAN-FILE")));
+      } catch (Exception e) {
+        logRed("Could not write plan file: %s", e.getMessage());
+        return 1;
+      }
+      logGreen(
+          "Plan with %d release(s) to delete written to %s.",
+          newPlan.size(), env.get("INPUT_PLAN-FILE"));
+    } else {
+      results =
+          processRepositories(repositories, params, token, accessFactory, repositoryConcurrency);
+    }
+
+    if (results.size() > 1) {
+      logGreen("Summary:");
+      for (RepositoryResult result : results) {
+        if (result.error() == null) {
+          logGreen("%s", result.summary());
+        } else {
+          logRed("%s", result.summary());
+        }
+      }
+    }
+
+    int deleted = results.stream().mapToInt(RepositoryResult::deleted).sum();
+    int failed = results.stream().mapToInt(RepositoryResult::failed).sum();
+    int remaining = results.stream().mapToInt(RepositoryResult::remaining).sum();
+    if (remaining > 0) {
+      logYellow("Time budget reached, %d release(s) left to delete.", remaining);
+    }
+    logGreen(
+        "%d request(s) (%d retried), %d byte(s) received, in %d ms.",
+        metrics.requests(), metrics.retries(), metrics.bytesReceived(), metrics.durationMillis());
+    try {
+      metrics.report(env, deleted, failed, remaining);
+    } catch (Exception e) {
+      logYellow("Could not write run metrics: %s", e.getMessage());
+    }
+    return results.stream().anyMatch(r -> r.error() != null) ? 1 : 0;
+  }
+
+  /** Splits the repository parameter on commas and whitespaces. */
+  static List<String> repositoryEntries(String value) {
+    return Arrays.stream(value.split("[,\\s]+")).filter(e -> !e.isBlank()).collect(toList());
+  }
+
+  /**
+   * Turns repository entries into repository names, listing the repositories of the owner for
+   * entries with glob characters (e.g. <code>rabbitmq/*-binaries-dev</code>).
+   */
+  static List<String> resolveRepositories(
+      List<String> entries, RequestScheduler scheduler, String apiUrl, String token) {
+    Set<String> repositories = new LinkedHashSet<>();
+    Map<String, List<String>> ownerRepositories = new HashMap<>();
+    for (String entry : entries) {
+      String owner = entry.split("/")[0];
+      String repository = entry.split("/")[1];
+      if (repository.contains("*") || repository.contains("?")) {
+        Pattern glob = globPattern(repository);
+        ownerRepositories
+            .computeIfAbsent(
+                owner, o -> GitubRestApiReleaseAccess.repositoryNames(scheduler, apiUrl, token, o))
+            .stream()
+            .filter(name -> glob.matcher(name).matches())
+            .sorted()
+            .forEach(name -> repositories.add(owner + "/" + name));
       } else {
-        logGreen("Tag filter: %s.", tagFilter);
+        repositories.add(entry);
       }
-      if (nameFilter == null) {
-        logGreen("No name filter.");
+    }
+    return new ArrayList<>(repositories);
+  }
+
+  static Pattern globPattern(String glob) {
+    StringBuilder regex = new StringBuilder();
+    for (char c : glob.toCharArray()) {
+      if (c == '*') {
+        regex.append(".*");
+      } else if (c == '?') {
+        regex.append('.');
       } else {
-        logGreen("Name filter: %s.", nameFilter);
+        regex.append(Pattern.quote(String.valueOf(c)));
       }
+    }
+    return Pattern.compile(regex.toString());
+  }
+
+  static List<RepositoryResult> processRepositories(
+      List<String> repositories,
+      Params params,
+      String token,
+      Function<Input, ReleaseAccess> accessFactory,
+      int repositoryConcurrency) {
+    return processRepositories(
+        repositories,
+        params,
+        token,
+        accessFactory,
+        repositoryConcurrency,
+        DeleteReleaseAction::process);
+  }
+
+  /**
+   * @param processor what to do with each repository, e.g. {@link #process(Input, ReleaseAccess)}
+   */
+  static List<RepositoryResult> processRepositories(
+      List<String> repositories,
+      Params params,
+      String token,
+      Function<Input, ReleaseAccess> accessFactory,
+      int repositoryConcurrency,
+      BiFunction<Input, ReleaseAccess, RepositoryResult> processor) {
+    Map<String, RepositoryResult> results = new ConcurrentHashMap<>();
+    boolean several = repositories.size() > 1;
+    forEachConcurrently(
+        repositories,
+        several ? repositoryConcurrency : 1,
+        repository -> {
+          if (several) {
+            // log lines of the repositories are interleaved
+            logPrefix("[" + repository + "] ");
+          }
+          Input input =
+              new Input(
+                  params, new Source(repository.split("/")[0], repository.split("/")[1], token));
+          RepositoryResult result;
+          try {
+            result = processor.apply(input, accessFactory.apply(input));
+          } catch (Exception e) {
+            logRed("Error while processing repository %s: %s", repository, e.getMessage());
+            result = new RepositoryResult(repository, e);
+          }
+          results.put(repository, result);
+        });
+    return repositories.stream().map(results::get).collect(toList());
+  }
+
+  static RepositoryResult process(Input input, ReleaseAccess access) {
+    Selection selection = select(input, access);
+    if (selection.listed() == 0) {
+      return new RepositoryResult(repositoryName(input.source()), 0, 0, new DeletionResult());
+    }
+    DeletionResult result = delete(input, access, selection.toDelete());
+    selection.kept().forEach(r -> log(" Keeping release '%s'", summary(r)));
+    return new RepositoryResult(
+        repositoryName(input.source()), selection.listed(), selection.selected(), result);
+  }
 
-      Function<Release, String> releaseSummary = r -> r.tag_name + "/" + r.name;
+  /** Selects the releases to delete, without deleting them, and adds them to the plan. */
+  static RepositoryResult plan(Input input, ReleaseAccess access, Map<String, List<Release>> plan) {
+    Selection selection = select(input, access);
+    String repository = repositoryName(input.source());
+    plan.put(repository, selection.toDelete());
+    selection.kept().forEach(r -> log(" Keeping release '%s'", summary(r)));
+    return new RepositoryResult(
+        repository, selection.listed(), selection.selected(), new DeletionResult());
+  }
+
+  /** Deletes the releases of a plan. */
+  static RepositoryResult apply(Input input, ReleaseAccess access, List<Release> releases) {
+    if (releases.isEmpty()) {
+      logGreen("No releases to delete.");
+    } else {
       logGreen(
-          "Repository release(s): %d (%s).",
-          releases.size(), releases.stream().map(releaseSummary).collect(joining(", ")));
+          "Release(s) to delete: %d (%s)",
+          releases.size(), sample(releases, DeleteReleaseAction::summary));
+      logGroup("Release(s) to delete", releases, DeleteReleaseAction::summary);
+    }
+    DeletionResult result = delete(input, access, releases);
+    return new RepositoryResult(
+        repositoryName(input.source()), releases.size(), releases.size(), result);
+  }
+
+  /** Lists the releases and selects the ones to delete with the policies. */
+  static Selection select(Input input, ReleaseAccess access) {
+    List<Policy> policies = input.params().policies();
+    Function<Release, String> releaseSummary = r -> r.tag_name + "/" + r.name;
+    List<Predicate<Release>> predicates = policies.stream().map(Policy::predicate).toList();
+    // releases are filtered as they are decoded, only the selected ones are kept in memory
+    ReleaseTable table = new ReleaseTable();
+    List<ReleaseTable.Retention> retentions =
+        policies.stream().map(p -> table.new Retention(p.keepLastN())).toList();
+    // one listing for all the policies, each release goes to the policies it matches
+    // all the releases are kept for the logs only in verbose mode, otherwise just a sample
+    List<String> releases = new ArrayList<>();
+    int[] listed = new int[] {0};
+    // only the releases with a tag that can match are needed when all the policies filter tags
+    List<String> tagPrefixes = tagPrefixes(policies);
+    boolean restricted =
+        access.list(
+            tagPrefixes,
+            r -> {
+              if (verbose() || listed[0] < LOG_SAMPLE_SIZE) {
+                releases.add(releaseSummary.apply(r));
+              }
+              listed[0]++;
+              int row = -1;
+              for (int i = 0; i < predicates.size(); i++) {
+                if (predicates.get(i).test(r)) {
+                  if (row < 0) {
+                    row = table.add(r);
+                  }
+                  retentions.get(i).add(row);
+                }
+              }
+            });
+    List<Release> filteredReleases = table.asList();
 
-      if (filteredReleases.isEmpty()) {
-        logGreen("No selected releases.");
+    if (listed[0] == 0) {
+      logGreen("No releases in the repository.");
+      return new Selection(0, 0, List.of(), List.of());
+    }
+
+    // a release is deleted if a policy selects it for deletion and no policy keeps it
+    BitSet kept = new BitSet();
+    BitSet toDelete = new BitSet();
+    for (ReleaseTable.Retention retention : retentions) {
+      kept.or(retention.kept());
+      toDelete.or(retention.deletionCandidates());
+    }
+    toDelete.andNot(kept);
+    // oldest first
+    List<Release> keptReleases = table.releases(table.sortedByPublication(kept));
+    List<Release> toDeleteReleases = table.releases(table.sortedByPublication(toDelete));
+
+    for (int i = 0; i < policies.size(); i++) {
+      Policy policy = policies.get(i);
+      String prefix = policies.size() == 1 ? "" : String.format("Policy %d: ", i + 1);
+      if (policy.tagFilter() == null) {
+        logGreen("%sNo tag filter.", prefix);
       } else {
         logGreen(
-            "Selected release(s): %d (%s)",
-            filteredReleases.size(),
-            filteredReleases.stream().map(releaseSummary).collect(joining(", ")));
+            "%sTag filter: %s.",
+            prefix, String.join(", ", PatternFilter.lines(policy.tagFilter())));
       }
-
-      if (toDeleteReleases.isEmpty()) {
-        logGreen("No releases to delete.");
+      if (policy.nameFilter() == null) {
+        logGreen("%sNo name filter.", prefix);
       } else {
         logGreen(
-            "Release(s) to delete: %d (%s)",
-            toDeleteReleases.size(),
-            toDeleteReleases.stream().map(releaseSummary).collect(joining(", ")));
+            "%sName filter: %s.",
+            prefix, String.join(", ", PatternFilter.lines(policy.nameFilter())));
+      }
+      if (policies.size() > 1) {
+        logGreen("%sKeeping the last %d release(s).", prefix, policy.keepLastN());
       }
+    }
 
-      filteredReleases.forEach(
+    if (restricted) {
+      logGreen(
+          "Repository release(s) with a tag starting with %s: %d (%s).",
+          String.join(", ", tagPrefixes),
+          listed[0],
+          sample(releases, listed[0], Function.identity()));
+    } else {
+      logGreen(
+          "Repository release(s): %d (%s).",
+          listed[0], sample(releases, listed[0], Function.identity()));
+    }
+    logGroup("Repository release(s)", releases, Function.identity());
+
+    if (filteredReleases.isEmpty()) {
+      logGreen("No selected releases.");
+    } else {
+      logGreen(
+          "Selected release(s): %d (%s)",
+          filteredReleases.size(), sample(filteredReleases, releaseSummary));
+      logGroup("Selected release(s)", filteredReleases, releaseSummary);
+    }
+
+    if (toDeleteReleases.isEmpty()) {
+      logGreen("No releases to delete.");
+    } else {
+      logGreen(
+          "Release(s) to delete: %d (%s)",
+          toDeleteReleases.size(), sample(toDeleteReleases, releaseSummary));
+      logGroup("Release(s) to delete", toDeleteReleases, releaseSummary);
+    }
+    return new Selection(listed[0], filteredReleases.size(), toDeleteReleases, keptReleases);
+  }
+
+  /** Deletes the releases, checks the deletions if needed, and reports failures. */
+  static DeletionResult delete(Input input, ReleaseAccess access, List<Release> releases) {
+    Function<Release, String> releaseSummary = DeleteReleaseAction::summary;
+    DeletionResult result =
+        deleteReleases(
+            access,
+            releases,
+            input.params().maxConcurrency(),
+            input.params().consistency(),
+            input.params().deadline());
+
+    if (input.params().consistency() == Consistency.BATCHED && !result.deleted().isEmpty()) {
+      List<Release> notDeleted = verifyDeletions(access, result.deleted());
+      if (notDeleted.isEmpty()) {
+        logGreen("Verified deletion of %d release(s).", result.deleted().size());
+      } else {
+        logYellow(
+            "Release(s) or tag(s) still present after deletion: %d (%s)",
+            notDeleted.size(), sample(notDeleted, releaseSummary));
+        logGroup("Release(s) or tag(s) still present after deletion", notDeleted, releaseSummary);
+      }
+    }
+
+    if (!result.remaining().isEmpty()) {
+      logYellow(
+          "Time budget reached, release(s) left to delete: %d (%s)",
+          result.remaining().size(), sample(result.remaining(), releaseSummary));
+      logGroup("Release(s) left to delete", result.remaining(), releaseSummary);
+    }
+
+    if (!result.failures().isEmpty()) {
+      logRed(
+          "Could not delete %d release(s): %s",
+          result.failures().size(), sample(result.failures().keySet(), releaseSummary));
+      logGroup(
+          "Could not delete",
+          result.failures().entrySet(),
+          e -> releaseSummary.apply(e.getKey()) + ": " + e.getValue().getMessage());
+    }
+    return result;
+  }
+
+  static String repositoryName(Source source) {
+    return source.owner() + "/" + source.repository();
+  }
+
+  static DeletionResult deleteReleases(
+      ReleaseAccess access, List<Release> releases, int maxConcurrency, Consistency consistency) {
+    return deleteReleases(access, releases, maxConcurrency, consistency, null);
+  }
+
+  /**
+   * Deletes the releases, oldest first.
+   *
+   * @param deadline the end of the time budget, no release deletion starts if it would end after
+   *     it, can be null
+   */
+  static DeletionResult deleteReleases(
+      ReleaseAccess access,
+      List<Release> releases,
+      int maxConcurrency,
+      Consistency consistency,
+      Deadline deadline) {
+    DeletionResult result = new DeletionResult();
+    List<Release> oldestFirst = new ArrayList<>(releases);
+    sortByPublication(oldestFirst);
+    BooleanSupplier canStart = deadline == null ? () -> true : deadline::canStart;
+    List<Release> remaining;
+    if (!access.deletesTagsInBatch()) {
+      remaining =
+          forEachConcurrently(
+              oldestFirst,
+              maxConcurrency,
+              canStart,
+              r -> timed(deadline, () -> deleteRelease(access, r, consistency, result)));
+    } else {
+      // releases first, then all their tags at once, then the optional wait
+      // the time budget applies to the releases, the tags of deleted releases are always deleted
+      Queue<Release> releasesDeleted = new ConcurrentLinkedQueue<>();
+      remaining =
+          forEachConcurrently(
+              oldestFirst,
+              maxConcurrency,
+              canStart,
+              r ->
+                  timed(
+                      deadline,
+                      () -> {
+                        logYellow("Removing release '%s'", summary(r));
+                        try {
+                          access.delete(r);
+                          releasesDeleted.add(r);
+                        } catch (Exception e) {
+                          logRed(
+                              "Error while deleting release '%s': %s", summary(r), e.getMessage());
+                          result.failed(r, e);
+                        }
+                      }));
+      Map<Release, Exception> tagFailures = access.deleteTags(new ArrayList<>(releasesDeleted));
+      tagFailures.forEach(
+          (r, e) -> {
+            logRed("Error while deleting tag of release '%s': %s", summary(r), e.getMessage());
+            result.failed(r, e);
+          });
+      List<Release> tagsDeleted =
+          releasesDeleted.stream().filter(r -> !tagFailures.containsKey(r)).collect(toList());
+      forEachConcurrently(
+          tagsDeleted,
+          maxConcurrency,
           r -> {
-            if (toDeleteReleases.contains(r)) {
-              logYellow("Removing release '%s'", releaseSummary.apply(r));
-              try {
-                access.delete(r);
-                access.deleteTag(r);
+            try {
+              if (consistency == Consistency.STRICT) {
                 access.waitForDeletion(r);
-              } catch (Exception e) {
-                logRed(
-                    "Error while deleting release '%s': %s",
-                    releaseSummary.apply(r), e.getMessage());
               }
-            } else {
-              log(" Keeping release '%s'", releaseSummary.apply(r));
+              result.deleted(r);
+            } catch (Exception e) {
+              logRed("Error while deleting release '%s': %s", summary(r), e.getMessage());
+              result.failed(r, e);
             }
           });
     }
+    result.remaining(remaining);
+    return result;
   }
 
-  private static void checkParameter(String env, String arg) {
-    if (System.getenv(env) == null) {
+  /** Runs the deletion and records its duration in the deadline, if any. */
+  private static void timed(Deadline deadline, Runnable deletion) {
+    if (deadline == null) {
+      deletion.run();
+    } else {
+      deadline.time(deletion);
+    }
+  }
+
+  private static <T> void forEachConcurrently(
+      List<T> elements, int maxConcurrency, Consumer<T> action) {
+    forEachConcurrently(elements, maxConcurrency, () -> true, action);
+  }
+
+  /**
+   * Processes the elements in order, at most maxConcurrency at a time, as long as the next one can
+   * start, then waits for the ones in flight.
+   *
+   * @return the elements that have not been processed
+   */
+  private static <T> List<T> forEachConcurrently(
+      List<T> elements, int maxConcurrency, BooleanSupplier canStart, Consumer<T> action) {
+    // bounds the number of elements being processed at the same time
+    Semaphore permits = new Semaphore(maxConcurrency);
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int i = 0; i < elements.size(); i++) {
+        permits.acquireUninterruptibly();
+        if (!canStart.getAsBoolean()) {
+          permits.release();
+          return new ArrayList<>(elements.subList(i, elements.size()));
+        }
+        T element = elements.get(i);
+        executor.submit(
+            () -> {
+              try {
+                action.accept(element);
+              } finally {
+                permits.release();
+              }
+            });
+      }
+    }
+    return List.of();
+  }
+
+  private static void deleteRelease(
+      ReleaseAccess access, Release r, Consistency consistency, DeletionResult result) {
+    logYellow("Removing release '%s'", summary(r));
+    try {
+      access.delete(r);
+      access.deleteTag(r);
+      if (consistency == Consistency.STRICT) {
+        access.waitForDeletion(r);
+      }
+      result.deleted(r);
+    } catch (Exception e) {
+      logRed("Error while deleting release '%s': %s", summary(r), e.getMessage());
+      result.failed(r, e);
+    }
+  }
+
+  private static String summary(Release r) {
+    return r.tag() + "/" + r.name();
+  }
+
+  /**
+   * Checks with one listing of the releases and one listing of the tags that deleted releases and
+   * their tags are gone.
+   *
+   * @return the releases that are still listed or whose tag is still present
+   */
+  static List<Release> verifyDeletions(ReleaseAccess access, List<Release> deleted) {
+    Set<Long> releaseIds = new HashSet<>();
+    access.list(r -> releaseIds.add(r.id()));
+    Set<String> tags = access.tags();
+    return deleted.stream()
+        .filter(r -> releaseIds.contains(r.id()) || tags.contains(r.tag()))
+        .collect(toList());
+  }
+
+  private static void checkParameter(Map<String, String> env, String name, String arg) {
+    if (env.get(name) == null) {
       throw new IllegalArgumentException("Parameter " + arg + " must be set");
     }
   }
 
+  /**
+   * @param regex one or several regular expressions, one per line
+   */
   static Predicate<Release> releaseRegexPredicate(
       Function<Release, String> accessor, String regex) {
-    Pattern pattern = Pattern.compile(regex);
-    return r -> pattern.matcher(accessor.apply(r)).matches();
+    PatternFilter filter = PatternFilter.compile(regex);
+    return r -> filter.test(accessor.apply(r));
   }
 
   static Predicate<Release> tagPredicate(String tagRegex) {
@@ -171,7 +879,7 @@ public class DeleteReleaseAction {
     return releaseRegexPredicate(Release::name, nameRegex);
   }
 
-  static List<Release> filter(List<Release> releases, String tagRegex, String nameRegex) {
+  static Predicate<Release> predicate(String tagRegex, String nameRegex) {
     Predicate<Release> predicate = r -> true;
     if (tagRegex != null) {
       predicate = predicate.and(tagPredicate(tagRegex));
@@ -179,101 +887,650 @@ public class DeleteReleaseAction {
     if (nameRegex != null) {
       predicate = predicate.and(namePredicate(nameRegex));
     }
-    return filter(releases, predicate);
+    return predicate;
+  }
+
+  /**
+   * The literal prefixes of the tag filters, if all the policies have a tag filter and all the
+   * expressions of the filters start with a literal prefix.
+   *
+   * @return the prefixes, without the ones that start with another prefix, empty if any tag can
+   *     match
+   */
+  static List<String> tagPrefixes(List<Policy> policies) {
+    List<String> prefixes = new ArrayList<>();
+    for (Policy policy : policies) {
+      if (policy.tagFilter() == null) {
+        return List.of();
+      }
+      List<String> filterPrefixes = PatternFilter.compile(policy.tagFilter()).prefixes();
+      if (filterPrefixes.isEmpty()) {
+        return List.of();
+      }
+      prefixes.addAll(filterPrefixes);
+    }
+    Collections.sort(prefixes);
+    List<String> shortest = new ArrayList<>();
+    for (String prefix : prefixes) {
+      if (shortest.isEmpty() || !prefix.startsWith(shortest.get(shortest.size() - 1))) {
+        shortest.add(prefix);
+      }
+    }
+    return shortest;
+  }
+
+  static List<Release> filter(List<Release> releases, String tagRegex, String nameRegex) {
+    return filter(releases, predicate(tagRegex, nameRegex));
   }
 
   static List<Release> filter(List<Release> releases, Predicate<Release> predicate) {
     return releases.stream().filter(predicate).collect(toList());
   }
 
+  /**
+   * @return the releases to delete, oldest first, releases without publication date first
+   */
   static List<Release> filterForDeletion(List<Release> releases, int keepLastN) {
-    if (releases.isEmpty()) {
-      return Collections.emptyList();
-    } else if (keepLastN <= 0) {
-      // do not want to keep any, return all
-      return releases;
-    } else if (keepLastN >= releases.size()) {
-      // we want to keep more than we have, so nothing to delete
-      return Collections.emptyList();
-    } else {
-      releases = new ArrayList<>(releases);
-      sortByPublication(releases);
-      return releases.subList(0, releases.size() - keepLastN);
-    }
+    ReleaseTable table = new ReleaseTable();
+    ReleaseTable.Retention retention = table.new Retention(keepLastN);
+    releases.forEach(r -> retention.add(table.add(r)));
+    return table.releases(table.sortedByPublication(retention.deletionCandidates()));
   }
 
   interface ReleaseAccess {
 
-    List<Release> list();
+    /** Passes each release to the consumer as soon as it is decoded. */
+    void list(Consumer<Release> consumer);
+
+    /**
+     * Passes the releases whose tag starts with one of the prefixes to the consumer, and possibly
+     * other releases.
+     *
+     * <p>Lists all the releases by default.
+     *
+     * @return whether the listing was restricted to the prefixes, false if all the releases were
+     *     listed
+     */
+    default boolean list(List<String> tagPrefixes, Consumer<Release> consumer) {
+      list(consumer);
+      return false;
+    }
+
+    default List<Release> list() {
+      List<Release> releases = new ArrayList<>();
+      list(releases::add);
+      return releases;
+    }
 
     void delete(Release release);
 
     void deleteTag(Release release);
 
     void waitForDeletion(Release release);
+
+    Set<String> tags();
+
+    /** Whether tags should be deleted all at once with {@link #deleteTags(List)}. */
+    default boolean deletesTagsInBatch() {
+      return false;
+    }
+
+    /**
+     * Deletes the tags of the releases.
+     *
+     * @return the releases whose tag could not be deleted, with the error
+     */
+    default Map<Release, Exception> deleteTags(List<Release> releases) {
+      Map<Release, Exception> failures = new LinkedHashMap<>();
+      for (Release release : releases) {
+        try {
+          deleteTag(release);
+        } catch (Exception e) {
+          failures.put(release, e);
+        }
+      }
+      return failures;
+    }
+  }
+
+  enum Consistency {
+    // trusts the response of the deletion requests
+    NONE,
+    // checks all deletions at once at the end of the run
+    BATCHED,
+    // waits for each release and tag to be gone after deletion
+    STRICT;
+
+    static Consistency from(String value) {
+      for (Consistency consistency : values()) {
+        if (consistency.name().equalsIgnoreCase(value.trim())) {
+          return consistency;
+        }
+      }
+      throw new IllegalArgumentException(
+          "Parameter consistency must be one of none, batched, strict");
+    }
   }
 
   static class GitubRestApiReleaseAccess implements ReleaseAccess {
 
     private static final Duration DELETION_TIMEOUT = Duration.ofSeconds(5);
+    private static final String TAG_REF_PREFIX = "refs/tags/";
+    private static final int PAGE_SIZE = 100;
+    private static final int PAGE_PREFETCH = 4;
+    // above this number of tags, listing all the releases is usually cheaper
+    private static final int MAX_TAG_LOOKUPS = 100;
+    private static final Pattern PAGE_PARAMETER = Pattern.compile("([?&])page=([0-9]+)");
+    // the index can miss changes of releases it already has, e.g. a renamed tag
+    private static final Duration INDEX_MAX_AGE = Duration.ofDays(1);
+
+    private final RequestScheduler scheduler;
+    private final Input input;
+    private final String apiUrl;
+    private final PageCache cache;
+    private final AdaptiveLimiter deletionLimiter;
+    private final AtomicBoolean indexUsed = new AtomicBoolean(false);
+    private volatile ReleaseIndex index;
+
+    GitubRestApiReleaseAccess(Input input, String apiUrl) {
+      this(input, apiUrl, new RequestScheduler(newHttpClient(), RequestScheduler.DEFAULT_RESERVE));
+    }
 
-    private final HttpClient client =
-        HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(60)).build();
+    GitubRestApiReleaseAccess(Input input, String apiUrl, RequestScheduler scheduler) {
+      this(input, apiUrl, scheduler, null);
+    }
 
-    private final Input input;
+    /**
+     * @param cache cache for conditional listing requests, can be null
+     */
+    GitubRestApiReleaseAccess(
+        Input input, String apiUrl, RequestScheduler scheduler, PageCache cache) {
+      this(input, apiUrl, scheduler, cache, null);
+    }
 
-    GitubRestApiReleaseAccess(Input input) {
+    /**
+     * @param cache cache for conditional listing requests, can be null
+     * @param deletionLimiter adaptive limit of the DELETE requests in flight, can be null
+     */
+    GitubRestApiReleaseAccess(
+        Input input,
+        String apiUrl,
+        RequestScheduler scheduler,
+        PageCache cache,
+        AdaptiveLimiter deletionLimiter) {
       this.input = input;
+      this.apiUrl = apiUrl;
+      this.scheduler = scheduler;
+      this.cache = cache;
+      this.deletionLimiter = deletionLimiter;
+    }
+
+    static HttpClient newHttpClient() {
+      return HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(60)).build();
+    }
+
+    RequestScheduler scheduler() {
+      return this.scheduler;
+    }
+
+    String apiUrl() {
+      return this.apiUrl;
     }
 
     static String nextLink(String linkHeader) {
-      String nextLink = null;
-      for (String link : linkHeader.split(",")) {
+      return link(linkHeader, "next");
+    }
+
+    static String lastLink(String linkHeader) {
+      return link(linkHeader, "last");
+    }
+
+    private static String link(String linkHeader, String rel) {
+      String link = null;
+      for (String l : linkHeader.split(",")) {
         // e.g.
         // <https://api.github.com/repositories/343344332/releases?per_page=1&page=3>; rel="next"
-        String[] urlRel = link.split(";");
-        if ("rel=\"next\"".equals(urlRel[1].trim())) {
+        String[] urlRel = l.split(";");
+        if (("rel=\"" + rel + "\"").equals(urlRel[1].trim())) {
           String url = urlRel[0].trim();
           // removing the < and >
-          nextLink = url.substring(1, url.length() - 1);
+          link = url.substring(1, url.length() - 1);
+        }
+      }
+      return link;
+    }
+
+    static int pageNumber(String link) {
+      Matcher matcher = PAGE_PARAMETER.matcher(link);
+      if (matcher.find()) {
+        return Integer.parseInt(matcher.group(2));
+      } else {
+        throw new IllegalArgumentException("No page parameter in link " + link);
+      }
+    }
+
+    static String pageLink(String link, int page) {
+      return PAGE_PARAMETER.matcher(link).replaceFirst("$1page=" + page);
+    }
+
+    /**
+     * Lists the releases, incrementally with the release index of the cache for the first listing.
+     *
+     * <p>Other listings, e.g. to verify deletions, fetch all the pages.
+     */
+    @Override
+    public void list(Consumer<Release> consumer) {
+      if (cache != null && indexUsed.compareAndSet(false, true)) {
+        try {
+          indexedList(consumer);
+        } catch (RuntimeException e) {
+          throw e;
+        } catch (Exception e) {
+          throw new RuntimeException(e);
         }
+      } else {
+        listAll(consumer);
       }
-      return nextLink;
     }
 
+    /**
+     * Finds the tags starting with the prefixes and fetches their releases one by one, if there are
+     * not too many of them, otherwise lists all the releases.
+     *
+     * <p>Draft releases cannot be fetched by tag, they are taken from the first pages of the
+     * listing, where GitHub lists them before the published releases. All the releases are listed
+     * if a draft comes after a published release.
+     *
+     * <p>With a cache, the listing is already incremental, so all the releases are listed.
+     */
     @Override
-    public List<Release> list() {
-      HttpRequest request = requestBuilder("/releases").GET().build();
+    public boolean list(List<String> tagPrefixes, Consumer<Release> consumer) {
+      if (cache != null || tagPrefixes.isEmpty()) {
+        list(consumer);
+        return false;
+      }
+      Set<String> tags = new LinkedHashSet<>();
+      for (String prefix : tagPrefixes) {
+        try {
+          tags.addAll(matchingTags(prefix));
+        } catch (RuntimeException e) {
+          logYellow("Could not list tags (%s), listing all releases.", e.getMessage());
+          list(consumer);
+          return false;
+        }
+        if (tags.size() > MAX_TAG_LOOKUPS) {
+          logGreen(
+              "More than %d tags match the tag filters, listing all releases.", MAX_TAG_LOOKUPS);
+          list(consumer);
+          return false;
+        }
+      }
       try {
-        Type type = TypeToken.getParameterized(List.class, Release.class).getType();
-        List<Release> releases = new ArrayList<>();
-        boolean hasMore = true;
-        while (hasMore) {
-          HttpResponse<String> response =
-              client.send(request, HttpResponse.BodyHandlers.ofString());
-          releases.addAll(GSON.fromJson(response.body(), type));
-          Optional<String> link = response.headers().firstValue("link");
-          String nextLink;
-          if (link.isPresent() && (nextLink = nextLink(link.get())) != null) {
-            request = requestBuilder().uri(URI.create(nextLink)).GET().build();
+        List<Release> drafts = leadingDrafts();
+        if (drafts == null) {
+          logYellow("Draft releases are not listed first, listing all releases.");
+          list(consumer);
+          return false;
+        }
+        logGreen(
+            "%d tag(s) start with %s, fetching their releases.",
+            tags.size(), String.join(", ", tagPrefixes));
+        for (Release draft : drafts) {
+          if (draft.tag() != null && tagPrefixes.stream().anyMatch(draft.tag()::startsWith)) {
+            consumer.accept(draft);
+          }
+        }
+        releasesByTag(new ArrayList<>(tags), consumer);
+        return true;
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    /**
+     * Lists the pages until the first published release.
+     *
+     * @return the draft releases before the first published release, null if there is a draft after
+     *     it on the same page
+     */
+    private List<Release> leadingDrafts() throws Exception {
+      List<Release> drafts = new ArrayList<>();
+      boolean[] published = new boolean[] {false};
+      boolean[] draftAfterPublished = new boolean[] {false};
+      listUntil(
+          releasesUrl() + "?per_page=" + PAGE_SIZE,
+          r -> {
+            if (!isDraft(r)) {
+              published[0] = true;
+            } else if (published[0]) {
+              draftAfterPublished[0] = true;
+            } else {
+              drafts.add(r);
+            }
+          },
+          r -> !isDraft(r));
+      return draftAfterPublished[0] ? null : drafts;
+    }
+
+    // only published releases have a publication date
+    private static boolean isDraft(Release release) {
+      return release.publicationEpoch() == Release.NO_PUBLICATION;
+    }
+
+    /**
+     * Fetches the releases of the tags, with at most {@link #PAGE_PREFETCH} requests in flight, and
+     * passes them to the consumer in tag order. Tags without release are skipped.
+     */
+    private void releasesByTag(List<String> tags, Consumer<Release> consumer) throws Exception {
+      Deque<Future<Release>> releases = new ArrayDeque<>();
+      try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+        int next = 0;
+        while (next < tags.size() || !releases.isEmpty()) {
+          while (next < tags.size() && releases.size() < PAGE_PREFETCH) {
+            HttpRequest request =
+                requestBuilder("/releases/tags/" + pathSegments(tags.get(next++))).GET().build();
+            releases.add(
+                executor.submit(
+                    () -> {
+                      HttpResponse<String> response =
+                          scheduler.send(request, BodyHandlers.ofString());
+                      if (response.statusCode() == 404) {
+                        return null;
+                      }
+                      checkListingResponse(response);
+                      return gson().fromJson(response.body(), Release.class);
+                    }));
+          }
+          try {
+            Release release = releases.poll().get();
+            if (release != null) {
+              consumer.accept(release);
+            }
+          } catch (ExecutionException e) {
+            releases.forEach(r -> r.cancel(true));
+            throw e;
+          }
+        }
+      }
+    }
+
+    /**
+     * Fetches only the pages with releases newer than the ones in the index, if it is recent
+     * enough, then passes the releases of the index that are still there to the consumer, and
+     * writes the index again.
+     *
+     * <p>The number of releases, from the last page, must match the listed releases and the rest of
+     * the index, otherwise releases have been deleted elsewhere and the other pages are listed.
+     */
+    private void indexedList(Consumer<Release> consumer) throws Exception {
+      Path file = cache.file(URI.create(releasesUrl()), ".releases.idx");
+      ReleaseIndex previous = ReleaseIndex.open(file);
+      long now = Instant.now().getEpochSecond();
+      if (previous != null && now - previous.fullListingEpoch() > INDEX_MAX_AGE.getSeconds()) {
+        previous = null;
+      }
+      try (ReleaseIndex.Writer writer = ReleaseIndex.writer(file)) {
+        Consumer<Release> indexing =
+            r -> {
+              writer.add(r);
+              consumer.accept(r);
+            };
+        long fullListingEpoch;
+        if (previous == null) {
+          listAll(indexing);
+          fullListingEpoch = now;
+        } else {
+          ReleaseIndex known = previous;
+          Set<Long> listed = new HashSet<>();
+          // the listing goes at least down to this position of the index
+          int[] lastKnownPosition = new int[] {-1};
+          String link =
+              listUntil(
+                  releasesUrl() + "?per_page=" + PAGE_SIZE,
+                  r -> {
+                    listed.add(r.id());
+                    lastKnownPosition[0] = Math.max(lastKnownPosition[0], known.position(r.id()));
+                    indexing.accept(r);
+                  },
+                  r -> known.position(r.id()) >= 0);
+          String nextLink = link == null ? null : nextLink(link);
+          if (nextLink == null) {
+            // all the pages have been listed
+            fullListingEpoch = now;
           } else {
-            hasMore = false;
+            List<Integer> rest = new ArrayList<>();
+            for (int i = lastKnownPosition[0] + 1; i < known.size(); i++) {
+              // releases missing from the listed pages have been deleted
+              if (!known.deleted(i) && !listed.contains(known.id(i))) {
+                rest.add(i);
+              }
+            }
+            String lastLink = lastLink(link);
+            if (lastLink != null && releaseCount(lastLink) == listed.size() + rest.size()) {
+              String urlPrefix = releasesUrl() + "/";
+              for (int position : rest) {
+                indexing.accept(known.release(position, urlPrefix));
+              }
+              fullListingEpoch = known.fullListingEpoch();
+            } else {
+              // the index has releases deleted elsewhere, it cannot tell which ones
+              listUntil(
+                  nextLink,
+                  r -> {
+                    if (listed.add(r.id())) {
+                      indexing.accept(r);
+                    }
+                  },
+                  r -> false);
+              fullListingEpoch = now;
+            }
+          }
+        }
+        index = writer.commit(fullListingEpoch);
+      }
+    }
+
+    /**
+     * Fetches the pages one after the other from the link, until a page has a release that matches
+     * the predicate.
+     *
+     * @return the Link header of the page the listing stopped at, null if no page matched
+     */
+    private String listUntil(String nextLink, Consumer<Release> consumer, Predicate<Release> stop)
+        throws Exception {
+      while (nextLink != null) {
+        HttpRequest request = listingRequest(nextLink);
+        boolean[] stopped = new boolean[] {false};
+        String link =
+            page(
+                request,
+                r -> {
+                  stopped[0] |= stop.test(r);
+                  consumer.accept(r);
+                });
+        if (stopped[0]) {
+          return link;
+        }
+        nextLink = link == null ? null : nextLink(link);
+      }
+      return null;
+    }
+
+    /** The number of releases, from the last page of the listing. */
+    private int releaseCount(String lastLink) throws Exception {
+      int[] lastPageSize = new int[] {0};
+      page(listingRequest(lastLink), r -> lastPageSize[0]++);
+      return (pageNumber(lastLink) - 1) * PAGE_SIZE + lastPageSize[0];
+    }
+
+    private void listAll(Consumer<Release> consumer) {
+      HttpRequest request = listingRequest(releasesUrl() + "?per_page=" + PAGE_SIZE);
+      try {
+        Optional<String> link = Optional.ofNullable(page(request, consumer));
+        String lastLink = link.map(GitubRestApiReleaseAccess::lastLink).orElse(null);
+        if (lastLink != null) {
+          listPages(lastLink, pageNumber(lastLink), consumer);
+        } else {
+          String nextLink = link.map(GitubRestApiReleaseAccess::nextLink).orElse(null);
+          while (nextLink != null) {
+            request = listingRequest(nextLink);
+            link = Optional.ofNullable(page(request, consumer));
+            nextLink = link.map(GitubRestApiReleaseAccess::nextLink).orElse(null);
           }
         }
-        return releases;
       } catch (Exception e) {
         throw new RuntimeException(e);
       }
     }
 
+    /**
+     * Fetches pages 2 to lastPage concurrently, with at most {@link #PAGE_PREFETCH} pages in
+     * flight, and passes their releases to the consumer in page order.
+     */
+    private void listPages(String link, int lastPage, Consumer<Release> consumer) throws Exception {
+      Deque<Future<List<Release>>> pages = new ArrayDeque<>();
+      try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+        int nextPage = 2;
+        while (nextPage <= lastPage || !pages.isEmpty()) {
+          while (nextPage <= lastPage && pages.size() < PAGE_PREFETCH) {
+            HttpRequest request = listingRequest(pageLink(link, nextPage++));
+            pages.add(
+                executor.submit(
+                    () -> {
+                      List<Release> releases = new ArrayList<>(PAGE_SIZE);
+                      page(request, releases::add);
+                      return releases;
+                    }));
+          }
+          try {
+            pages.poll().get().forEach(consumer);
+          } catch (ExecutionException e) {
+            pages.forEach(p -> p.cancel(true));
+            throw e;
+          }
+        }
+      }
+    }
+
+    /**
+     * Fetches a page of releases and passes them to the consumer.
+     *
+     * @return the Link header of the response, if any
+     */
+    private String page(HttpRequest request, Consumer<Release> consumer) throws Exception {
+      if (cache != null) {
+        return cachedPage(request, consumer);
+      }
+      HttpResponse<InputStream> response = scheduler.send(request, BodyHandlers.ofInputStream());
+      try (InputStream body = response.body()) {
+        checkListingResponse(response);
+        decode(decompressed(body, contentEncoding(response)), consumer);
+      }
+      return response.headers().firstValue("link").orElse(null);
+    }
+
+    private String cachedPage(HttpRequest request, Consumer<Release> consumer) throws Exception {
+      URI uri = request.uri();
+      PageCache.Entry entry = cache.get(uri);
+      if (entry != null) {
+        request =
+            HttpRequest.newBuilder(request, (name, value) -> true)
+                .setHeader("If-None-Match", entry.etag())
+                .build();
+      }
+      Path download = cache.temporaryFile(uri);
+      try {
+        HttpResponse<Path> response =
+            scheduler.send(
+                request,
+                info ->
+                    info.statusCode() == 200
+                        ? BodySubscribers.ofFile(download)
+                        : BodySubscribers.replacing(null));
+        // a 304 is free for the rate limit, the cached page is used
+        if (response.statusCode() != 304 || entry == null) {
+          checkListingResponse(response);
+          String etag = response.headers().firstValue("etag").orElse(null);
+          String link = response.headers().firstValue("link").orElse(null);
+          // the page is stored as it is received, compressed or not
+          String encoding = contentEncoding(response);
+          if (etag == null) {
+            try (InputStream body = decompressed(Files.newInputStream(download), encoding)) {
+              decode(body, consumer);
+            }
+            return link;
+          }
+          entry = cache.put(uri, etag, link, encoding, download);
+        }
+        try (InputStream body =
+            decompressed(Files.newInputStream(entry.body()), entry.encoding())) {
+          decode(body, consumer);
+        }
+        return entry.link();
+      } finally {
+        Files.deleteIfExists(download);
+      }
+    }
+
+    /**
+     * A request for a page of releases, the JDK client does not decompress responses, so the
+     * compression is asked and handled explicitly.
+     */
+    private HttpRequest listingRequest(String uri) {
+      return requestBuilder()
+          .uri(URI.create(uri))
+          .setHeader("Accept-Encoding", "gzip")
+          .GET()
+          .build();
+    }
+
+    private static String contentEncoding(HttpResponse<?> response) {
+      return response.headers().firstValue("content-encoding").orElse(null);
+    }
+
+    /** Decompresses the body as it is read, if it is compressed. */
+    static InputStream decompressed(InputStream body, String contentEncoding) throws IOException {
+      if (contentEncoding == null || contentEncoding.isBlank()) {
+        return body;
+      } else if ("gzip".equalsIgnoreCase(contentEncoding.trim())) {
+        return new GZIPInputStream(body, 8192);
+      } else {
+        body.close();
+        throw new IllegalStateException("Unexpected content encoding: " + contentEncoding);
+      }
+    }
+
+    private static void checkListingResponse(HttpResponse<?> response) {
+      if (statusClass(response.statusCode()) != 200) {
+        throw new IllegalStateException(
+            "Unexpected response code (release listing): " + response.statusCode());
+      }
+    }
+
+    static void decode(InputStream page, Consumer<Release> consumer) throws IOException {
+      try (JsonReader reader =
+          new JsonReader(new InputStreamReader(page, StandardCharsets.UTF_8))) {
+        reader.beginArray();
+        while (reader.hasNext()) {
+          consumer.accept(gson().fromJson(reader, Release.class));
+        }
+        reader.endArray();
+      }
+    }
+
     @Override
     public void delete(Release release) {
       HttpRequest request = requestBuilder().DELETE().uri(URI.create(release.url())).build();
       try {
-        HttpResponse<Void> response = client.send(request, BodyHandlers.discarding());
-        int statusCode = response.statusCode();
+        int statusCode = sendDeletion(request);
         if (statusClass(statusCode) != 200) {
-          logYellow("Unexpected response code (release deletion):" + response.statusCode());
+          logYellow("Unexpected response code (release deletion):" + statusCode);
+        }
+        ReleaseIndex releaseIndex = index;
+        if (releaseIndex != null && (statusClass(statusCode) == 200 || statusCode == 404)) {
+          releaseIndex.markDeleted(release.id());
         }
       } catch (Exception e) {
         throw new RuntimeException(e);
@@ -284,26 +1541,60 @@ public class DeleteReleaseAction {
     public void deleteTag(Release release) {
       HttpRequest request = requestBuilder().uri(tagUri(release)).DELETE().build();
       try {
-        HttpResponse<Void> response = client.send(request, BodyHandlers.discarding());
-        int statusCode = response.statusCode();
+        int statusCode = sendDeletion(request);
         if (statusClass(statusCode) != 200) {
-          logYellow("Unexpected response code (tag deletion):" + response.statusCode());
+          logYellow("Unexpected response code (tag deletion):" + statusCode);
         }
       } catch (Exception e) {
         throw new RuntimeException(e);
       }
     }
 
+    /**
+     * Sends a DELETE request, within the adaptive limit if there is one.
+     *
+     * <p>Successful attempts report their latency to the limiter, rate-limited attempts and
+     * secondary rate limit errors reduce the limit.
+     *
+     * @return the status code of the response
+     */
+    private int sendDeletion(HttpRequest request) throws IOException, InterruptedException {
+      if (deletionLimiter == null) {
+        return scheduler.send(request, BodyHandlers.discarding()).statusCode();
+      }
+      try (AdaptiveLimiter.Permit permit = deletionLimiter.acquire()) {
+        HttpResponse<String> response =
+            scheduler.send(
+                request,
+                BodyHandlers.ofString(),
+                (attempt, latency) -> {
+                  int statusCode = attempt.statusCode();
+                  if (scheduler.retryDelay(statusCode, attempt.headers()) != null) {
+                    permit.throttled("response " + statusCode);
+                  } else if (statusClass(statusCode) == 200
+                      || statusCode == 404
+                      || statusCode == 422) {
+                    // already deleted counts as a success
+                    permit.succeeded(latency);
+                  }
+                });
+        if (response.statusCode() == 403 && secondaryRateLimit(response.body())) {
+          permit.throttled("secondary rate limit");
+        }
+        return response.statusCode();
+      }
+    }
+
+    /** Whether a 403 response body is a secondary rate limit error rather than a permission one. */
+    static boolean secondaryRateLimit(String body) {
+      return body != null && body.toLowerCase(Locale.ROOT).contains("rate limit");
+    }
+
     private URI tagUri(Release release) {
       // https://api.github.com/repos/rabbitmq/rabbitmq-server-binaries-dev/git/refs/tags/v3.9.0-alpha-test.1
       String path = "/git/refs/tags/" + release.tag();
       return URI.create(
-          GITHUB_API_URL
-              + "/repos/"
-              + input.source().owner()
-              + "/"
-              + input.source().repository()
-              + path);
+          apiUrl + "/repos/" + input.source().owner() + "/" + input.source().repository() + path);
     }
 
     @Override
@@ -320,6 +1611,46 @@ public class DeleteReleaseAction {
       }
     }
 
+    @Override
+    public Set<String> tags() {
+      return matchingTags("");
+    }
+
+    /** The tags starting with the prefix, all the tags with an empty prefix. */
+    private Set<String> matchingTags(String prefix) {
+      String path = "/git/matching-refs/tags";
+      if (!prefix.isEmpty()) {
+        path += "/" + pathSegments(prefix);
+      }
+      HttpRequest request = requestBuilder(path).GET().build();
+      try {
+        Set<String> tags = new HashSet<>();
+        boolean hasMore = true;
+        while (hasMore) {
+          HttpResponse<String> response = scheduler.send(request, BodyHandlers.ofString());
+          if (statusClass(response.statusCode()) != 200) {
+            throw new IllegalStateException(
+                "Unexpected response code (tag listing): " + response.statusCode());
+          }
+          for (JsonElement ref : JsonParser.parseString(response.body()).getAsJsonArray()) {
+            // e.g. refs/tags/v3.9.0-alpha-test.1
+            tags.add(
+                ref.getAsJsonObject().get("ref").getAsString().substring(TAG_REF_PREFIX.length()));
+          }
+          Optional<String> link = response.headers().firstValue("link");
+          String nextLink;
+          if (link.isPresent() && (nextLink = nextLink(link.get())) != null) {
+            request = requestBuilder().uri(URI.create(nextLink)).GET().build();
+          } else {
+            hasMore = false;
+          }
+        }
+        return tags;
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    }
+
     private boolean getUntilNotFound(URI uri) {
       Duration increment = Duration.ofSeconds(1);
       boolean keepGoing = true;
@@ -327,7 +1658,7 @@ public class DeleteReleaseAction {
       while (keepGoing && elapsed.compareTo(DELETION_TIMEOUT) < 0) {
         HttpRequest request = requestBuilder().GET().uri(uri).build();
         try {
-          HttpResponse<Void> response = client.send(request, BodyHandlers.discarding());
+          HttpResponse<Void> response = scheduler.send(request, BodyHandlers.discarding());
           if (response.statusCode() == 404) {
             keepGoing = false;
           } else {
@@ -346,12 +1677,28 @@ public class DeleteReleaseAction {
       return auth(HttpRequest.newBuilder());
     }
 
+    /** Encodes a value for a URI path, slashes of the value separate segments. */
+    static String pathSegments(String value) {
+      return URLEncoder.encode(value, StandardCharsets.UTF_8)
+          .replace("+", "%20")
+          .replace("%2F", "/");
+    }
+
+    private String releasesUrl() {
+      return apiUrl
+          + "/repos/"
+          + input.source().owner()
+          + "/"
+          + input.source().repository()
+          + "/releases";
+    }
+
     private Builder requestBuilder(String path) {
       return auth(
           HttpRequest.newBuilder()
               .uri(
                   URI.create(
-                      GITHUB_API_URL
+                      apiUrl
                           + "/repos/"
                           + input.source().owner()
                           + "/"
@@ -363,26 +1710,180 @@ public class DeleteReleaseAction {
       return builder.setHeader("Authorization", "token " + input.source().token());
     }
 
+    /** Lists the names of the repositories of an organization or a user. */
+    static List<String> repositoryNames(
+        RequestScheduler scheduler, String apiUrl, String token, String owner) {
+      try {
+        List<String> names = new ArrayList<>();
+        URI uri = URI.create(apiUrl + "/orgs/" + owner + "/repos?per_page=" + PAGE_SIZE);
+        boolean user = false;
+        while (uri != null) {
+          HttpRequest request =
+              HttpRequest.newBuilder(uri).setHeader("Authorization", "token " + token).build();
+          HttpResponse<String> response = scheduler.send(request, BodyHandlers.ofString());
+          if (response.statusCode() == 404 && !user) {
+            // not an organization
+            user = true;
+            uri = URI.create(apiUrl + "/users/" + owner + "/repos?per_page=" + PAGE_SIZE);
+            continue;
+          } else if (statusClass(response.statusCode()) != 200) {
+            throw new IllegalStateException(
+                "Unexpected response code (repository listing): " + response.statusCode());
+          }
+          for (JsonElement repository : JsonParser.parseString(response.body()).getAsJsonArray()) {
+            names.add(repository.getAsJsonObject().get("name").getAsString());
+          }
+          uri =
+              response
+                  .headers()
+                  .firstValue("link")
+                  .map(GitubRestApiReleaseAccess::nextLink)
+                  .map(URI::create)
+                  .orElse(null);
+        }
+        return names;
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    }
+
     private static int statusClass(int statusCode) {
       return statusCode - statusCode % 100;
     }
   }
 
-  static class ZonedDateTimeDeserializer implements JsonDeserializer<ZonedDateTime> {
+  /**
+   * Reads only the fields of a release the action uses, other values (body, assets, author, etc)
+   * are skipped without being materialized.
+   */
+  static class ReleaseTypeAdapter extends TypeAdapter<Release> {
 
     @Override
-    public ZonedDateTime deserialize(
-        JsonElement json, Type typeOfT, JsonDeserializationContext context)
-        throws JsonParseException {
-      return ZonedDateTime.parse(json.getAsString(), DateTimeFormatter.ISO_ZONED_DATE_TIME);
+    public void write(JsonWriter out, Release release) throws IOException {
+      if (release == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      out.name("id").value(release.id);
+      out.name("url").value(release.url);
+      out.name("published_at");
+      if (release.published_at == Release.NO_PUBLICATION) {
+        out.nullValue();
+      } else {
+        out.value(Instant.ofEpochSecond(release.published_at).toString());
+      }
+      out.name("tag_name").value(release.tag_name);
+      out.name("name").value(release.name);
+      out.endObject();
+    }
+
+    @Override
+    public Release read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      Release release = new Release();
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "id" -> release.id = in.nextLong();
+          case "url" -> release.url = nextString(in);
+          case "published_at" -> {
+            String publishedAt = nextString(in);
+            release.published_at =
+                publishedAt == null ? Release.NO_PUBLICATION : epochSecond(publishedAt);
+          }
+          case "tag_name" -> release.tag_name = nextString(in);
+          case "name" -> release.name = nextString(in);
+          default -> in.skipValue();
+        }
+      }
+      in.endObject();
+      return release;
+    }
+
+    private static String nextString(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      return in.nextString();
+    }
+
+    /**
+     * Parses a timestamp to epoch seconds.
+     *
+     * <p>GitHub's <code>yyyy-MM-ddTHH:mm:ssZ</code> format is parsed directly, other ISO-8601
+     * formats go through {@link OffsetDateTime}.
+     */
+    static long epochSecond(String timestamp) {
+      if (timestamp.length() == 20
+          && timestamp.charAt(4) == '-'
+          && timestamp.charAt(7) == '-'
+          && timestamp.charAt(10) == 'T'
+          && timestamp.charAt(13) == ':'
+          && timestamp.charAt(16) == ':'
+          && timestamp.charAt(19) == 'Z') {
+        int year = digits(timestamp, 0, 4);
+        int month = digits(timestamp, 5, 2);
+        int day = digits(timestamp, 8, 2);
+        int hour = digits(timestamp, 11, 2);
+        int minute = digits(timestamp, 14, 2);
+        int second = digits(timestamp, 17, 2);
+        if (year >= 0
+            && month >= 1
+            && month <= 12
+            && day >= 1
+            && day <= 31
+            && hour >= 0
+            && hour < 24
+            && minute >= 0
+            && minute < 60
+            && second >= 0
+            && second < 60) {
+          return daysFromCivil(year, month, day) * 86400L + hour * 3600L + minute * 60L + second;
+        }
+      }
+      return OffsetDateTime.parse(timestamp).toEpochSecond();
+    }
+
+    /**
+     * @return the value of the digits, or -1 if a character is not a digit
+     */
+    private static int digits(String s, int offset, int length) {
+      int value = 0;
+      for (int i = offset; i < offset + length; i++) {
+        int digit = s.charAt(i) - '0';
+        if (digit < 0 || digit > 9) {
+          return -1;
+        }
+        value = value * 10 + digit;
+      }
+      return value;
+    }
+
+    /** Days since 1970-01-01 in the proleptic Gregorian calendar (H. Hinnant's algorithm). */
+    private static long daysFromCivil(int year, int month, int day) {
+      year -= month <= 2 ? 1 : 0;
+      long era = Math.floorDiv(year, 400);
+      long yearOfEra = year - era * 400;
+      long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+      long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+      return era * 146097 + dayOfEra - 719468;
     }
   }
 
   static class Release {
 
+    // sorts before any date, like a missing publication date did
+    static final long NO_PUBLICATION = Long.MIN_VALUE;
+
     private long id;
     private String url;
-    private ZonedDateTime published_at;
+    // epoch seconds
+    private long published_at = NO_PUBLICATION;
     private String tag_name;
     private String name;
 
@@ -395,8 +1896,20 @@ public class DeleteReleaseAction {
     }
 
     Release(long id, ZonedDateTime published_at) {
+      this(id, null, published_at, null, null);
+    }
+
+    Release(long id, String url, ZonedDateTime published_at, String tag, String name) {
+      this(
+          id, url, published_at == null ? NO_PUBLICATION : published_at.toEpochSecond(), tag, name);
+    }
+
+    Release(long id, String url, long published_at, String tag, String name) {
       this.id = id;
+      this.url = url;
       this.published_at = published_at;
+      this.tag_name = tag;
+      this.name = name;
     }
 
     long id() {
@@ -416,6 +1929,12 @@ public class DeleteReleaseAction {
     }
 
     ZonedDateTime publication() {
+      return this.published_at == NO_PUBLICATION
+          ? null
+          : Instant.ofEpochSecond(this.published_at).atZone(ZoneOffset.UTC);
+    }
+
+    long publicationEpoch() {
       return this.published_at;
     }
 
@@ -428,7 +1947,7 @@ public class DeleteReleaseAction {
           + url
           + '\''
           + ", published_at="
-          + published_at
+          + publication()
           + ", tag_name='"
           + tag_name
           + '\''
@@ -453,6 +1972,138 @@ public class DeleteReleaseAction {
     }
   }
 
+  static class DeletionResult {
+
+    private final Queue<Release> deleted = new ConcurrentLinkedQueue<>();
+    private final Map<Release, Exception> failures = new ConcurrentHashMap<>();
+    private volatile List<Release> remaining = List.of();
+
+    private void deleted(Release release) {
+      this.deleted.add(release);
+    }
+
+    private void failed(Release release, Exception error) {
+      this.failures.put(release, error);
+    }
+
+    List<Release> deleted() {
+      return new ArrayList<>(this.deleted);
+    }
+
+    Map<Release, Exception> failures() {
+      return Collections.unmodifiableMap(this.failures);
+    }
+
+    private void remaining(List<Release> releases) {
+      this.remaining = List.copyOf(releases);
+    }
+
+    /** The releases not deleted because of the time budget, oldest first. */
+    List<Release> remaining() {
+      return this.remaining;
+    }
+  }
+
+  /** The releases to delete and to keep in a repository. */
+  static class Selection {
+
+    private final int listed;
+    private final int selected;
+    private final List<Release> toDelete;
+    private final List<Release> kept;
+
+    Selection(int listed, int selected, List<Release> toDelete, List<Release> kept) {
+      this.listed = listed;
+      this.selected = selected;
+      this.toDelete = toDelete;
+      this.kept = kept;
+    }
+
+    int listed() {
+      return listed;
+    }
+
+    int selected() {
+      return selected;
+    }
+
+    /** Oldest first. */
+    List<Release> toDelete() {
+      return toDelete;
+    }
+
+    /** Oldest first. */
+    List<Release> kept() {
+      return kept;
+    }
+  }
+
+  static class RepositoryResult {
+
+    private final String repository;
+    private final int listed;
+    private final int selected;
+    private final int deleted;
+    private final int failed;
+    private final int remaining;
+    private final Exception error;
+
+    RepositoryResult(String repository, int listed, int selected, DeletionResult result) {
+      this.repository = repository;
+      this.listed = listed;
+      this.selected = selected;
+      this.deleted = result.deleted().size();
+      this.failed = result.failures().size();
+      this.remaining = result.remaining().size();
+      this.error = null;
+    }
+
+    RepositoryResult(String repository, Exception error) {
+      this.repository = repository;
+      this.listed = 0;
+      this.selected = 0;
+      this.deleted = 0;
+      this.failed = 0;
+      this.remaining = 0;
+      this.error = error;
+    }
+
+    String repository() {
+      return repository;
+    }
+
+    int deleted() {
+      return deleted;
+    }
+
+    int failed() {
+      return failed;
+    }
+
+    /** The releases left to delete because of the time budget. */
+    int remaining() {
+      return remaining;
+    }
+
+    Exception error() {
+      return error;
+    }
+
+    String summary() {
+      if (error == null) {
+        String summary =
+            String.format(
+                "%s: %d release(s), %d selected, %d deleted, %d failed deletion(s)",
+                repository, listed, selected, deleted, failed);
+        return remaining == 0
+            ? summary
+            : summary + String.format(", %d left to delete (time budget)", remaining);
+      } else {
+        return String.format("%s: error, %s", repository, error.getMessage());
+      }
+    }
+  }
+
   static class Input {
 
     private final Params params;
@@ -479,16 +2130,126 @@ public class DeleteReleaseAction {
 
   static class Params {
 
+    private final List<Policy> policies;
+    private final int max_concurrency;
+    private final Consistency consistency;
+    private final Deadline deadline;
+
+    Params(
+        String tag_filter,
+        String name_filter,
+        int keep_last_n,
+        int max_concurrency,
+        Consistency consistency) {
+      this(List.of(new Policy(tag_filter, name_filter, keep_last_n)), max_concurrency, consistency);
+    }
+
+    Params(List<Policy> policies, int max_concurrency, Consistency consistency) {
+      this(policies, max_concurrency, consistency, null);
+    }
+
+    /**
+     * @param deadline the end of the time budget of the run, can be null
+     */
+    Params(List<Policy> policies, int max_concurrency, Consistency consistency, Deadline deadline) {
+      this.policies = List.copyOf(policies);
+      this.max_concurrency = max_concurrency;
+      this.consistency = consistency;
+      this.deadline = deadline;
+    }
+
+    List<Policy> policies() {
+      return policies;
+    }
+
+    int maxConcurrency() {
+      return max_concurrency;
+    }
+
+    Consistency consistency() {
+      return consistency;
+    }
+
+    Deadline deadline() {
+      return deadline;
+    }
+
+    @Override
+    public String toString() {
+      return "Params{"
+          + "policies="
+          + policies
+          + ", max_concurrency="
+          + max_concurrency
+          + ", consistency="
+          + consistency
+          + '}';
+    }
+  }
+
+  /** A retention rule: the releases matching the filters, except the last ones. */
+  static class Policy {
+
     private final String tag_filter;
     private final String name_filter;
     private final int keep_last_n;
 
-    Params(String tag_filter, String name_filter, int keep_last_n) {
+    Policy(String tag_filter, String name_filter, int keep_last_n) {
       this.tag_filter = tag_filter;
       this.name_filter = name_filter;
       this.keep_last_n = keep_last_n;
     }
 
+    /**
+     * Parses the <code>policies</code> parameter, a JSON array of objects with <code>tag-filter
+     * </code>, <code>name-filter</code>, and <code>keep-last-n</code> fields.
+     */
+    static List<Policy> parse(String json) {
+      String error =
+          "Parameter policies must be a JSON array of objects with tag-filter and/or name-filter, "
+              + "and keep-last-n";
+      JsonElement element;
+      try {
+        element = JsonParser.parseString(json);
+      } catch (JsonParseException e) {
+        throw new IllegalArgumentException(error + ": " + e.getMessage());
+      }
+      if (!element.isJsonArray() || element.getAsJsonArray().isEmpty()) {
+        throw new IllegalArgumentException(error);
+      }
+      List<Policy> policies = new ArrayList<>();
+      for (JsonElement policyElement : element.getAsJsonArray()) {
+        if (!policyElement.isJsonObject()) {
+          throw new IllegalArgumentException(error);
+        }
+        JsonObject policy = policyElement.getAsJsonObject();
+        String tagFilter = stringField(policy, "tag-filter");
+        String nameFilter = stringField(policy, "name-filter");
+        JsonElement keepLastN = policy.get("keep-last-n");
+        if ((tagFilter == null && nameFilter == null)
+            || keepLastN == null
+            || !keepLastN.isJsonPrimitive()) {
+          throw new IllegalArgumentException(error);
+        }
+        try {
+          policies.add(
+              new Policy(tagFilter, nameFilter, Integer.parseInt(keepLastN.getAsString())));
+        } catch (NumberFormatException e) {
+          throw new IllegalArgumentException(error);
+        }
+      }
+      return policies;
+    }
+
+    private static String stringField(JsonObject object, String name) {
+      JsonElement field = object.get(name);
+      return field == null || field.isJsonNull() ? null : field.getAsString();
+    }
+
+    Predicate<Release> predicate() {
+      return DeleteReleaseAction.predicate(tag_filter, name_filter);
+    }
+
     String tagFilter() {
       return tag_filter;
     }
@@ -503,7 +2264,7 @@ public class DeleteReleaseAction {
 
     @Override
     public String toString() {
-      return "Params{"
+      return "Policy{"
           + "tag_filter='"
           + tag_filter
           + '\''
@@ -546,9 +2307,10 @@ public class DeleteReleaseAction {
     }
   }
 
+  static final Comparator<Release> PUBLICATION_ORDER =
+      Comparator.comparingLong(Release::publicationEpoch);
+
   static void sortByPublication(List<Release> releases) {
-    releases.sort(
-        Comparator.comparing(
-            Release::publication, Comparator.nullsFirst(Comparator.naturalOrder())));
+    releases.sort(PUBLICATION_ORDER);
   }
 }
@@ -0,0 +1,281 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static com.rabbitmq.actions.Utils.logGreen;
+
+import com.rabbitmq.actions.DeleteReleaseAction.Input;
+import com.rabbitmq.actions.DeleteReleaseAction.Release;
+import com.rabbitmq.actions.DeleteReleaseAction.ReleaseAccess;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Deletes tags with a single git push over smart HTTP, other operations use another access.
+ *
+ * <p>The push sends one delete command per tag in one <code>git-receive-pack</code> request, with
+ * the <code>atomic</code> capability if the server supports it, and reads the status of each ref in
+ * the report.
+ */
+class GitPushReleaseAccess implements ReleaseAccess {
+
+  private static final String TAG_REF_PREFIX = "refs/tags/";
+
+  private final ReleaseAccess delegate;
+  private final Input input;
+  private final String serverUrl;
+  private final RequestScheduler scheduler;
+
+  GitPushReleaseAccess(
+      ReleaseAccess delegate, Input input, String serverUrl, RequestScheduler scheduler) {
+    this.delegate = delegate;
+    this.input = input;
+    this.serverUrl = serverUrl;
+    this.scheduler = scheduler;
+  }
+
+  @Override
+  public void list(Consumer<Release> consumer) {
+    delegate.list(consumer);
+  }
+
+  @Override
+  public boolean list(List<String> tagPrefixes, Consumer<Release> consumer) {
+    return delegate.list(tagPrefixes, consumer);
+  }
+
+  @Override
+  public void delete(Release release) {
+    delegate.delete(release);
+  }
+
+  @Override
+  public void deleteTag(Release release) {
+    Map<Release, Exception> failures = deleteTags(List.of(release));
+    if (failures.containsKey(release)) {
+      throw new RuntimeException(failures.get(release));
+    }
+  }
+
+  @Override
+  public void waitForDeletion(Release release) {
+    delegate.waitForDeletion(release);
+  }
+
+  @Override
+  public Set<String> tags() {
+    return delegate.tags();
+  }
+
+  @Override
+  public boolean deletesTagsInBatch() {
+    return true;
+  }
+
+  @Override
+  public Map<Release, Exception> deleteTags(List<Release> releases) {
+    Map<Release, Exception> failures = new LinkedHashMap<>();
+    if (releases.isEmpty()) {
+      return failures;
+    }
+    try {
+      Advertisement advertisement = advertisement();
+      Map<String, Release> refs = new LinkedHashMap<>();
+      List<String> commands = new ArrayList<>();
+      for (Release release : releases) {
+        String ref = TAG_REF_PREFIX + release.tag();
+        String oldId = advertisement.refs.get(ref);
+        // a tag that is not advertised is already gone
+        if (oldId != null) {
+          refs.put(ref, release);
+          commands.add(oldId + " " + "0".repeat(oldId.length()) + " " + ref);
+        }
+      }
+      if (commands.isEmpty()) {
+        return failures;
+      }
+      Map<String, String> report = push(commands, advertisement.capabilities);
+      refs.forEach(
+          (ref, release) -> {
+            String status = report.get(ref);
+            if (status == null) {
+              failures.put(release, new IllegalStateException("No status for " + ref));
+            } else if (!"ok".equals(status)) {
+              failures.put(release, new IllegalStateException(status));
+            }
+          });
+      logGreen(
+          "Deleted %d tag(s) out of %d with one push.",
+          refs.size() - failures.size(), commands.size());
+    } catch (Exception e) {
+      releases.forEach(r -> failures.put(r, e));
+    }
+    return failures;
+  }
+
+  private String repositoryUrl() {
+    return serverUrl + "/" + input.source().owner() + "/" + input.source().repository() + ".git";
+  }
+
+  private HttpRequest.Builder requestBuilder(String path) {
+    String credentials = "x-access-token:" + input.source().token();
+    return HttpRequest.newBuilder(URI.create(repositoryUrl() + path))
+        .setHeader(
+            "Authorization",
+            "Basic "
+                + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private Advertisement advertisement() throws IOException, InterruptedException {
+    HttpRequest request = requestBuilder("/info/refs?service=git-receive-pack").GET().build();
+    HttpResponse<InputStream> response = scheduler.send(request, BodyHandlers.ofInputStream());
+    try (InputStream body = response.body()) {
+      if (response.statusCode() != 200) {
+        throw new IllegalStateException(
+            "Unexpected response code (ref advertisement): " + response.statusCode());
+      }
+      return parseAdvertisement(body);
+    }
+  }
+
+  static Advertisement parseAdvertisement(InputStream in) throws IOException {
+    Advertisement advertisement = new Advertisement();
+    String line = readPacketLine(in);
+    if (line != null && line.startsWith("# service=")) {
+      // smart HTTP service line, followed by a flush
+      readPacketLine(in);
+      line = readPacketLine(in);
+    }
+    while (line != null) {
+      int nul = line.indexOf('\0');
+      if (nul >= 0) {
+        advertisement.capabilities = Set.of(line.substring(nul + 1).trim().split(" "));
+        line = line.substring(0, nul);
+      }
+      String[] idRef = line.trim().split(" ", 2);
+      // skips peeled tags and the placeholder of an empty repository
+      if (idRef.length == 2 && !idRef[1].endsWith("^{}")) {
+        advertisement.refs.put(idRef[1], idRef[0]);
+      }
+      line = readPacketLine(in);
+    }
+    return advertisement;
+  }
+
+  private Map<String, String> push(List<String> commands, Set<String> serverCapabilities)
+      throws IOException, InterruptedException {
+    List<String> capabilities = new ArrayList<>();
+    capabilities.add("report-status");
+    if (serverCapabilities.contains("atomic")) {
+      capabilities.add("atomic");
+    }
+    if (!serverCapabilities.contains("delete-refs")) {
+      throw new IllegalStateException("Server does not support ref deletion");
+    }
+    HttpRequest request =
+        requestBuilder("/git-receive-pack")
+            .setHeader("Content-Type", "application/x-git-receive-pack-request")
+            .setHeader("Accept", "application/x-git-receive-pack-result")
+            .POST(HttpRequest.BodyPublishers.ofByteArray(pushRequest(commands, capabilities)))
+            .build();
+    HttpResponse<InputStream> response = scheduler.send(request, BodyHandlers.ofInputStream());
+    try (InputStream body = response.body()) {
+      if (response.statusCode() != 200) {
+        throw new IllegalStateException(
+            "Unexpected response code (push): " + response.statusCode());
+      }
+      return parseReport(body);
+    }
+  }
+
+  /** The commands, the first one with the capabilities, then a flush and no pack. */
+  static byte[] pushRequest(List<String> commands, List<String> capabilities) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (int i = 0; i < commands.size(); i++) {
+      String command = commands.get(i);
+      if (i == 0) {
+        command += "\0" + String.join(" ", capabilities);
+      }
+      writePacketLine(out, command + "\n");
+    }
+    out.writeBytes("0000".getBytes(StandardCharsets.US_ASCII));
+    return out.toByteArray();
+  }
+
+  /**
+   * @return the status of each ref, "ok" or the reason of the failure
+   */
+  static Map<String, String> parseReport(InputStream in) throws IOException {
+    Map<String, String> report = new HashMap<>();
+    String line;
+    String unpack = null;
+    while ((line = readPacketLine(in)) != null) {
+      line = line.trim();
+      if (line.startsWith("unpack ")) {
+        unpack = line.substring("unpack ".length());
+      } else if (line.startsWith("ok ")) {
+        report.put(line.substring("ok ".length()), "ok");
+      } else if (line.startsWith("ng ")) {
+        String[] refReason = line.substring("ng ".length()).split(" ", 2);
+        report.put(refReason[0], refReason.length == 2 ? refReason[1] : "rejected");
+      }
+    }
+    if (unpack != null && !"ok".equals(unpack)) {
+      throw new IllegalStateException("Push failed: " + unpack);
+    }
+    return report;
+  }
+
+  private static void writePacketLine(ByteArrayOutputStream out, String line) {
+    byte[] content = line.getBytes(StandardCharsets.UTF_8);
+    out.writeBytes(String.format("%04x", content.length + 4).getBytes(StandardCharsets.US_ASCII));
+    out.writeBytes(content);
+  }
+
+  /**
+   * @return the content of the packet line, null for a flush packet or the end of the stream
+   */
+  private static String readPacketLine(InputStream in) throws IOException {
+    byte[] length = in.readNBytes(4);
+    if (length.length < 4) {
+      return null;
+    }
+    int size = Integer.parseInt(new String(length, StandardCharsets.US_ASCII), 16);
+    if (size <= 4) {
+      return null;
+    }
+    byte[] content = in.readNBytes(size - 4);
+    return new String(content, StandardCharsets.UTF_8);
+  }
+
+  static class Advertisement {
+
+    private final Map<String, String> refs = new HashMap<>();
+    private Set<String> capabilities = Set.of();
+
+    Map<String, String> refs() {
+      return refs;
+    }
+
+    Set<String> capabilities() {
+      return capabilities;
+    }
+  }
+}
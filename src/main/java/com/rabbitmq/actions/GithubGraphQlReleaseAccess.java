@@ -0,0 +1,257 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static com.rabbitmq.actions.DeleteReleaseAction.gson;
+import static com.rabbitmq.actions.Utils.logYellow;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.rabbitmq.actions.DeleteReleaseAction.GitubRestApiReleaseAccess;
+import com.rabbitmq.actions.DeleteReleaseAction.Input;
+import com.rabbitmq.actions.DeleteReleaseAction.Release;
+import com.rabbitmq.actions.DeleteReleaseAction.ReleaseAccess;
+import com.rabbitmq.actions.DeleteReleaseAction.ReleaseTypeAdapter;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Lists releases and deletes tags with the GitHub GraphQL API.
+ *
+ * <p>Listing only asks for the fields the action uses, 100 releases at a time. Tags are deleted
+ * with several aliased <code>deleteRef</code> mutations per request. Release deletion and waiting
+ * use the REST API, which is also used for listing if the GraphQL API cannot be used.
+ */
+class GithubGraphQlReleaseAccess implements ReleaseAccess {
+
+  static final int TAG_DELETION_BATCH_SIZE = 25;
+
+  private static final String LIST_QUERY =
+      "query($owner: String!, $name: String!, $cursor: String) { "
+          + "repository(owner: $owner, name: $name) { "
+          + "releases(first: 100, after: $cursor, "
+          + "orderBy: {field: CREATED_AT, direction: DESC}) { "
+          + "pageInfo { hasNextPage endCursor } "
+          + "nodes { databaseId tagName name publishedAt tag { id } } } } }";
+
+  private final Input input;
+  private final String graphqlUrl;
+  private final GitubRestApiReleaseAccess rest;
+  // release ID to the node ID of its tag ref, needed by deleteRef
+  private final Map<Long, String> tagRefIds = new ConcurrentHashMap<>();
+
+  GithubGraphQlReleaseAccess(Input input, String graphqlUrl, GitubRestApiReleaseAccess rest) {
+    this.input = input;
+    this.graphqlUrl = graphqlUrl;
+    this.rest = rest;
+  }
+
+  @Override
+  public void list(Consumer<Release> consumer) {
+    String cursor = null;
+    boolean hasMore = true;
+    boolean first = true;
+    while (hasMore) {
+      JsonObject variables = new JsonObject();
+      variables.addProperty("owner", input.source().owner());
+      variables.addProperty("name", input.source().repository());
+      if (cursor != null) {
+        variables.addProperty("cursor", cursor);
+      }
+      JsonObject releases;
+      try {
+        releases =
+            query(LIST_QUERY, variables).getAsJsonObject("repository").getAsJsonObject("releases");
+      } catch (RuntimeException e) {
+        if (first) {
+          logYellow("Could not list releases with GraphQL (%s), using REST API.", e.getMessage());
+          rest.list(consumer);
+          return;
+        } else {
+          throw e;
+        }
+      }
+      first = false;
+      for (JsonElement element : releases.getAsJsonArray("nodes")) {
+        JsonObject node = element.getAsJsonObject();
+        Release release = release(node);
+        if (node.get("tag").isJsonObject()) {
+          tagRefIds.put(release.id(), node.getAsJsonObject("tag").get("id").getAsString());
+        }
+        consumer.accept(release);
+      }
+      JsonObject pageInfo = releases.getAsJsonObject("pageInfo");
+      hasMore = pageInfo.get("hasNextPage").getAsBoolean();
+      cursor = hasMore ? pageInfo.get("endCursor").getAsString() : null;
+    }
+  }
+
+  private Release release(JsonObject node) {
+    long id = node.get("databaseId").getAsLong();
+    // the REST URL, used to delete the release
+    String url =
+        rest.apiUrl()
+            + "/repos/"
+            + input.source().owner()
+            + "/"
+            + input.source().repository()
+            + "/releases/"
+            + id;
+    long publishedAt =
+        node.get("publishedAt").isJsonNull()
+            ? Release.NO_PUBLICATION
+            : ReleaseTypeAdapter.epochSecond(node.get("publishedAt").getAsString());
+    String name = node.get("name").isJsonNull() ? null : node.get("name").getAsString();
+    return new Release(id, url, publishedAt, node.get("tagName").getAsString(), name);
+  }
+
+  @Override
+  public void delete(Release release) {
+    rest.delete(release);
+  }
+
+  @Override
+  public void deleteTag(Release release) {
+    Map<Release, Exception> failures = deleteTags(List.of(release));
+    if (failures.containsKey(release)) {
+      throw new RuntimeException(failures.get(release));
+    }
+  }
+
+  @Override
+  public boolean deletesTagsInBatch() {
+    return true;
+  }
+
+  @Override
+  public Map<Release, Exception> deleteTags(List<Release> releases) {
+    Map<Release, Exception> failures = new LinkedHashMap<>();
+    List<Release> batch = new ArrayList<>(TAG_DELETION_BATCH_SIZE);
+    for (Release release : releases) {
+      if (tagRefIds.containsKey(release.id())) {
+        batch.add(release);
+        if (batch.size() == TAG_DELETION_BATCH_SIZE) {
+          failures.putAll(deleteTagBatch(batch));
+          batch.clear();
+        }
+      } else {
+        // tag node ID unknown, e.g. the release was not listed with GraphQL
+        try {
+          rest.deleteTag(release);
+        } catch (Exception e) {
+          failures.put(release, e);
+        }
+      }
+    }
+    if (!batch.isEmpty()) {
+      failures.putAll(deleteTagBatch(batch));
+    }
+    return failures;
+  }
+
+  static String deleteRefsMutation(int count) {
+    StringBuilder mutation = new StringBuilder("mutation(");
+    for (int i = 0; i < count; i++) {
+      mutation.append(i == 0 ? "" : ", ").append("$r").append(i).append(": ID!");
+    }
+    mutation.append(") {");
+    for (int i = 0; i < count; i++) {
+      mutation
+          .append(" t")
+          .append(i)
+          .append(": deleteRef(input: {refId: $r")
+          .append(i)
+          .append("}) { clientMutationId }");
+    }
+    return mutation.append(" }").toString();
+  }
+
+  private Map<Release, Exception> deleteTagBatch(List<Release> batch) {
+    JsonObject variables = new JsonObject();
+    for (int i = 0; i < batch.size(); i++) {
+      variables.addProperty("r" + i, tagRefIds.get(batch.get(i).id()));
+    }
+    Map<Release, Exception> failures = new LinkedHashMap<>();
+    JsonObject response;
+    try {
+      response = post(deleteRefsMutation(batch.size()), variables);
+    } catch (Exception e) {
+      batch.forEach(r -> failures.put(r, e));
+      return failures;
+    }
+    if (response.has("errors")) {
+      for (JsonElement error : response.getAsJsonArray("errors")) {
+        JsonObject errorObject = error.getAsJsonObject();
+        JsonArray path = errorObject.getAsJsonArray("path");
+        String message = errorObject.get("message").getAsString();
+        if (path != null && !path.isEmpty()) {
+          // the alias is the first element of the path, e.g. t3
+          int index = Integer.parseInt(path.get(0).getAsString().substring(1));
+          failures.put(batch.get(index), new IllegalStateException(message));
+        } else {
+          batch.forEach(r -> failures.putIfAbsent(r, new IllegalStateException(message)));
+        }
+      }
+    }
+    batch.stream().filter(r -> !failures.containsKey(r)).forEach(r -> tagRefIds.remove(r.id()));
+    return failures;
+  }
+
+  @Override
+  public void waitForDeletion(Release release) {
+    rest.waitForDeletion(release);
+  }
+
+  @Override
+  public Set<String> tags() {
+    return rest.tags();
+  }
+
+  private JsonObject query(String query, JsonObject variables) {
+    JsonObject response = post(query, variables);
+    if (response.has("errors")) {
+      throw new IllegalStateException(
+          "GraphQL error(s): " + response.getAsJsonArray("errors").toString());
+    }
+    return response.getAsJsonObject("data");
+  }
+
+  private JsonObject post(String query, JsonObject variables) {
+    JsonObject body = new JsonObject();
+    body.addProperty("query", query);
+    body.add("variables", variables);
+    HttpRequest request =
+        HttpRequest.newBuilder()
+            .uri(URI.create(graphqlUrl))
+            .setHeader("Authorization", "bearer " + input.source().token())
+            .setHeader("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(gson().toJson(body)))
+            .build();
+    try {
+      HttpResponse<String> response = rest.scheduler().send(request, BodyHandlers.ofString());
+      if (response.statusCode() != 200) {
+        throw new IllegalStateException(
+            "Unexpected response code (GraphQL): " + response.statusCode());
+      }
+      return JsonParser.parseString(response.body()).getAsJsonObject();
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
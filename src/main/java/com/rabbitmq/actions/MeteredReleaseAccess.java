@@ -0,0 +1,101 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import com.rabbitmq.actions.DeleteReleaseAction.Release;
+import com.rabbitmq.actions.DeleteReleaseAction.ReleaseAccess;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Records the time spent in each phase of a run, around another access.
+ *
+ * <p>The time spent in the listing consumer counts as filtering, the rest of the listing as
+ * listing.
+ */
+class MeteredReleaseAccess implements ReleaseAccess {
+
+  private final ReleaseAccess delegate;
+  private final Metrics metrics;
+
+  MeteredReleaseAccess(ReleaseAccess delegate, Metrics metrics) {
+    this.delegate = delegate;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public void list(Consumer<Release> consumer) {
+    metered(
+        consumer,
+        c -> {
+          delegate.list(c);
+          return false;
+        });
+  }
+
+  @Override
+  public boolean list(List<String> tagPrefixes, Consumer<Release> consumer) {
+    return metered(consumer, c -> delegate.list(tagPrefixes, c));
+  }
+
+  /**
+   * @return the result of the listing
+   */
+  private boolean metered(Consumer<Release> consumer, Predicate<Consumer<Release>> listing) {
+    // releases are passed to the consumer one at a time
+    long[] consumerNanos = new long[1];
+    long start = System.nanoTime();
+    try {
+      return listing.test(
+          release -> {
+            long consumerStart = System.nanoTime();
+            consumer.accept(release);
+            consumerNanos[0] += System.nanoTime() - consumerStart;
+          });
+    } finally {
+      metrics.phase(Metrics.LISTING, System.nanoTime() - start - consumerNanos[0]);
+      metrics.phase(Metrics.FILTERING, consumerNanos[0]);
+    }
+  }
+
+  @Override
+  public void delete(Release release) {
+    metrics.timed(Metrics.DELETE, () -> delegate.delete(release));
+  }
+
+  @Override
+  public void deleteTag(Release release) {
+    metrics.timed(Metrics.DELETE_TAG, () -> delegate.deleteTag(release));
+  }
+
+  @Override
+  public void waitForDeletion(Release release) {
+    metrics.timed(Metrics.WAIT, () -> delegate.waitForDeletion(release));
+  }
+
+  @Override
+  public Set<String> tags() {
+    return delegate.tags();
+  }
+
+  @Override
+  public boolean deletesTagsInBatch() {
+    return delegate.deletesTagsInBatch();
+  }
+
+  @Override
+  public Map<Release, Exception> deleteTags(List<Release> releases) {
+    long start = System.nanoTime();
+    try {
+      return delegate.deleteTags(releases);
+    } finally {
+      metrics.phase(Metrics.DELETE_TAG, System.nanoTime() - start);
+    }
+  }
+}
@@ -0,0 +1,253 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Counters and timings of a run: time spent in each phase, latency of each type of HTTP call,
+ * number of requests and retries, bytes transferred.
+ *
+ * <p>Phase times are cumulative: concurrent deletions add up, so they can exceed the duration of
+ * the run.
+ */
+class Metrics {
+
+  static final String LISTING = "listing";
+  static final String FILTERING = "filtering";
+  static final String DELETE = "delete";
+  static final String DELETE_TAG = "deleteTag";
+  static final String WAIT = "wait";
+
+  private static final Pattern RELEASE_PATH = Pattern.compile(".*/releases/[0-9]+");
+
+  private final long start = System.nanoTime();
+  private final Map<String, LongAdder> phases = new ConcurrentHashMap<>();
+  private final Map<String, Latencies> calls = new ConcurrentHashMap<>();
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder retries = new LongAdder();
+  private final LongAdder bytesSent = new LongAdder();
+  private final LongAdder bytesReceived = new LongAdder();
+
+  void phase(String phase, long nanos) {
+    phases.computeIfAbsent(phase, p -> new LongAdder()).add(nanos);
+  }
+
+  void timed(String phase, Runnable action) {
+    long start = System.nanoTime();
+    try {
+      action.run();
+    } finally {
+      phase(phase, System.nanoTime() - start);
+    }
+  }
+
+  void request(HttpRequest request, long nanos) {
+    requests.increment();
+    request
+        .bodyPublisher()
+        .map(HttpRequest.BodyPublisher::contentLength)
+        .filter(l -> l > 0)
+        .ifPresent(bytesSent::add);
+    calls.computeIfAbsent(callType(request), t -> new Latencies()).add(nanos);
+  }
+
+  void retry() {
+    retries.increment();
+  }
+
+  void received(List<ByteBuffer> buffers) {
+    for (ByteBuffer buffer : buffers) {
+      bytesReceived.add(buffer.remaining());
+    }
+  }
+
+  long durationMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+  }
+
+  long requests() {
+    return requests.sum();
+  }
+
+  long retries() {
+    return retries.sum();
+  }
+
+  long bytesReceived() {
+    return bytesReceived.sum();
+  }
+
+  long bytesSent() {
+    return bytesSent.sum();
+  }
+
+  long phaseMillis(String phase) {
+    LongAdder nanos = phases.get(phase);
+    return nanos == null ? 0 : TimeUnit.NANOSECONDS.toMillis(nanos.sum());
+  }
+
+  /** The type of an HTTP call, from its method and path. */
+  static String callType(HttpRequest request) {
+    String path = request.uri().getPath();
+    String method = request.method();
+    if (path.endsWith("/graphql")) {
+      return "graphql";
+    } else if (path.endsWith("/git-receive-pack") || path.endsWith("/info/refs")) {
+      return "git push";
+    } else if (path.contains("/git/matching-refs/tags")) {
+      return "tag listing";
+    } else if (path.contains("/git/refs/tags/")) {
+      return "DELETE".equals(method) ? "tag deletion" : "tag check";
+    } else if (path.contains("/releases/tags/")) {
+      return "release lookup";
+    } else if (RELEASE_PATH.matcher(path).matches()) {
+      return "DELETE".equals(method) ? "release deletion" : "release check";
+    } else if (path.endsWith("/releases")) {
+      return "release listing";
+    } else if (path.endsWith("/repos")) {
+      return "repository listing";
+    } else {
+      return method + " other";
+    }
+  }
+
+  /** Markdown tables for the step summary. */
+  String summary(int deleted, int failed, int remaining) {
+    StringBuilder summary = new StringBuilder();
+    summary.append("### Release deletion\n\n");
+    summary.append("| Deleted | Failed | Duration | Requests | Retries | Received | Sent |\n");
+    summary.append("|---:|---:|---:|---:|---:|---:|---:|\n");
+    summary.append(
+        String.format(
+            "| %d | %d | %d ms | %d | %d | %s | %s |%n%n",
+            deleted,
+            failed,
+            durationMillis(),
+            requests(),
+            retries(),
+            bytes(bytesReceived()),
+            bytes(bytesSent())));
+    if (remaining > 0) {
+      summary.append(
+          String.format("Time budget reached, %d release(s) left to delete.%n%n", remaining));
+    }
+    summary.append("| Phase | Cumulative time |\n|---|---:|\n");
+    for (String phase : List.of(LISTING, FILTERING, DELETE, DELETE_TAG, WAIT)) {
+      if (phases.containsKey(phase)) {
+        summary.append(String.format("| %s | %d ms |%n", phase, phaseMillis(phase)));
+      }
+    }
+    summary.append("\n| Call | Count | p50 | p90 | p99 | Max |\n|---|---:|---:|---:|---:|---:|\n");
+    new TreeMap<>(calls)
+        .forEach(
+            (type, latencies) -> {
+              long[] sorted = latencies.sorted();
+              summary.append(
+                  String.format(
+                      "| %s | %d | %d ms | %d ms | %d ms | %d ms |%n",
+                      type,
+                      sorted.length,
+                      millis(percentile(sorted, 50)),
+                      millis(percentile(sorted, 90)),
+                      millis(percentile(sorted, 99)),
+                      millis(sorted[sorted.length - 1])));
+            });
+    return summary.toString();
+  }
+
+  /** Values for the outputs of the action. */
+  Map<String, String> outputs(int deleted, int failed, int remaining) {
+    Map<String, String> outputs = new LinkedHashMap<>();
+    outputs.put("deleted-count", String.valueOf(deleted));
+    outputs.put("failed-count", String.valueOf(failed));
+    outputs.put("remaining-count", String.valueOf(remaining));
+    outputs.put("duration-ms", String.valueOf(durationMillis()));
+    outputs.put("request-count", String.valueOf(requests()));
+    outputs.put("retry-count", String.valueOf(retries()));
+    outputs.put("bytes-received", String.valueOf(bytesReceived()));
+    return outputs;
+  }
+
+  /**
+   * Appends the summary to the <code>GITHUB_STEP_SUMMARY</code> file and the outputs to the <code>
+   * GITHUB_OUTPUT</code> file, if they are set.
+   */
+  void report(Map<String, String> env, int deleted, int failed, int remaining) throws IOException {
+    if (env.get("GITHUB_STEP_SUMMARY") != null) {
+      append(Path.of(env.get("GITHUB_STEP_SUMMARY")), summary(deleted, failed, remaining));
+    }
+    if (env.get("GITHUB_OUTPUT") != null) {
+      StringBuilder outputs = new StringBuilder();
+      outputs(deleted, failed, remaining)
+          .forEach((k, v) -> outputs.append(k).append('=').append(v).append('\n'));
+      append(Path.of(env.get("GITHUB_OUTPUT")), outputs.toString());
+    }
+  }
+
+  private static void append(Path file, String content) throws IOException {
+    Files.writeString(
+        file,
+        content,
+        StandardCharsets.UTF_8,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.APPEND);
+  }
+
+  /** Nearest-rank percentile of sorted values. */
+  static long percentile(long[] sorted, int percentile) {
+    int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+    return sorted[Math.max(0, rank - 1)];
+  }
+
+  private static long millis(long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+
+  private static String bytes(long bytes) {
+    if (bytes < 1024) {
+      return bytes + " B";
+    } else if (bytes < 1024 * 1024) {
+      return String.format("%.1f KiB", bytes / 1024.0);
+    } else {
+      return String.format("%.1f MiB", bytes / (1024.0 * 1024.0));
+    }
+  }
+
+  private static class Latencies {
+
+    private long[] values = new long[64];
+    private int size;
+
+    synchronized void add(long nanos) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = nanos;
+    }
+
+    synchronized long[] sorted() {
+      long[] sorted = Arrays.copyOf(values, size);
+      Arrays.sort(sorted);
+      return sorted;
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static com.rabbitmq.actions.DeleteReleaseAction.gson;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * On-disk cache of release listing pages, to send conditional requests.
+ *
+ * <p>Each page URL has a body file and a metadata file with the ETag and the Link header of the
+ * response. The directory can be persisted between runs with <code>actions/cache</code>.
+ */
+class PageCache {
+
+  private final Path directory;
+
+  PageCache(Path directory) throws IOException {
+    this.directory = Files.createDirectories(directory);
+  }
+
+  /** A file of the cache directory for the URL, e.g. for other data than pages. */
+  Path file(URI uri, String suffix) {
+    return directory.resolve(key(uri) + suffix);
+  }
+
+  /**
+   * @return the cached entry for this URL, or null if there is none
+   */
+  Entry get(URI uri) {
+    String key = key(uri);
+    Path metadata = directory.resolve(key + ".meta.json");
+    Path body = directory.resolve(key + ".json");
+    if (Files.isRegularFile(metadata) && Files.isRegularFile(body)) {
+      try {
+        Entry entry = gson().fromJson(Files.readString(metadata), Entry.class);
+        if (entry != null && entry.etag != null) {
+          entry.body = body;
+          return entry;
+        }
+      } catch (Exception e) {
+        // corrupted entry, ignored
+      }
+    }
+    return null;
+  }
+
+  /**
+   * A file to download a page to, before storing it with {@link #put(URI, String, String, String,
+   * Path)}.
+   */
+  Path temporaryFile(URI uri) throws IOException {
+    return Files.createTempFile(directory, key(uri), ".tmp");
+  }
+
+  /**
+   * @param encoding the content encoding of the body, null if it is not compressed
+   */
+  Entry put(URI uri, String etag, String link, String encoding, Path downloadedBody)
+      throws IOException {
+    String key = key(uri);
+    Entry entry = new Entry(etag, link, encoding);
+    Path body = directory.resolve(key + ".json");
+    Path metadata = directory.resolve(key + ".meta.json");
+    Path metadataTmp = temporaryFile(uri);
+    Files.writeString(metadataTmp, gson().toJson(entry), StandardCharsets.UTF_8);
+    // no metadata means no entry, so a failure in between cannot pair an ETag with another body
+    Files.deleteIfExists(metadata);
+    Files.move(
+        downloadedBody, body, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    Files.move(
+        metadataTmp, metadata, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    entry.body = body;
+    return entry;
+  }
+
+  private static String key(URI uri) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of()
+          .formatHex(digest.digest(uri.toString().getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  static class Entry {
+
+    private final String etag;
+    private final String link;
+    private final String encoding;
+    private transient Path body;
+
+    Entry(String etag, String link, String encoding) {
+      this.etag = etag;
+      this.link = link;
+      this.encoding = encoding;
+    }
+
+    String etag() {
+      return etag;
+    }
+
+    String link() {
+      return link;
+    }
+
+    /** The content encoding of the body, null if it is not compressed. */
+    String encoding() {
+      return encoding;
+    }
+
+    Path body() {
+      return body;
+    }
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Matches values against several regular expressions, one per line of the filter.
+ *
+ * <p>A value matches if it matches any of the expressions entirely. Each expression is analyzed to
+ * find its literal prefix and a lower bound of the length of the values it matches, values that are
+ * too short or do not start with the prefix are rejected without evaluating the expression.
+ */
+class PatternFilter implements Predicate<String> {
+
+  private final List<CompiledPattern> patterns;
+
+  private PatternFilter(List<CompiledPattern> patterns) {
+    this.patterns = patterns;
+  }
+
+  static PatternFilter compile(String filter) {
+    List<CompiledPattern> patterns = new ArrayList<>();
+    for (String line : lines(filter)) {
+      patterns.add(new CompiledPattern(line));
+    }
+    return new PatternFilter(patterns);
+  }
+
+  /**
+   * @return the non-blank lines of the filter, trimmed
+   */
+  static List<String> lines(String filter) {
+    return Arrays.stream(filter.split("\\R")).map(String::trim).filter(l -> !l.isEmpty()).toList();
+  }
+
+  /**
+   * @return the literal prefixes of the expressions, empty if an expression has no literal prefix
+   */
+  List<String> prefixes() {
+    List<String> prefixes = new ArrayList<>();
+    for (CompiledPattern pattern : patterns) {
+      if (pattern.prefix().isEmpty()) {
+        return List.of();
+      }
+      prefixes.add(pattern.prefix());
+    }
+    return prefixes;
+  }
+
+  @Override
+  public boolean test(String value) {
+    if (value == null) {
+      return false;
+    }
+    for (CompiledPattern pattern : patterns) {
+      if (pattern.matches(value)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  static class CompiledPattern {
+
+    private final Pattern pattern;
+    private final String prefix;
+    private final int minLength;
+
+    CompiledPattern(String regex) {
+      this.pattern = Pattern.compile(regex);
+      String[] prefix = new String[1];
+      this.minLength = analyze(regex, prefix);
+      this.prefix = prefix[0];
+    }
+
+    boolean matches(String value) {
+      return value.length() >= minLength
+          && value.startsWith(prefix)
+          && pattern.matcher(value).matches();
+    }
+
+    String prefix() {
+      return prefix;
+    }
+
+    int minLength() {
+      return minLength;
+    }
+
+    /**
+     * Scans the expression as a sequence of atoms (literal characters, escapes, character classes)
+     * with their quantifiers, until the first construct it does not handle (group, alternation,
+     * etc).
+     *
+     * @param prefix to return the literal prefix
+     * @return a lower bound of the length of the matching values
+     */
+    private static int analyze(String regex, String[] prefix) {
+      prefix[0] = "";
+      if (regex.indexOf('|') >= 0) {
+        // alternatives can have different prefixes
+        return 0;
+      }
+      StringBuilder literalPrefix = new StringBuilder();
+      boolean inPrefix = true;
+      int minLength = 0;
+      int i = regex.startsWith("^") ? 1 : 0;
+      int length = regex.length();
+      scan:
+      while (i < length) {
+        char c = regex.charAt(i);
+        Character literal = null;
+        switch (c) {
+          case '\\' -> {
+            if (i + 1 >= length) {
+              break scan;
+            }
+            char escaped = regex.charAt(i + 1);
+            if (!Character.isLetterOrDigit(escaped)) {
+              literal = escaped;
+            } else if ("dDwWsS".indexOf(escaped) < 0) {
+              // e.g. \b, \Q, back references, \p{...}
+              break scan;
+            }
+            i += 2;
+          }
+          case '[' -> {
+            int end = classEnd(regex, i);
+            if (end < 0) {
+              break scan;
+            }
+            i = end + 1;
+          }
+          case '.' -> i++;
+          case '$' -> {
+            // an anchor, only at the end
+            break scan;
+          }
+          case '(', ')', '^', '*', '+', '?', '{', '}' -> {
+            break scan;
+          }
+          default -> {
+            literal = c;
+            i++;
+          }
+        }
+        int atomMinLength = 1;
+        boolean quantified = false;
+        if (i < length) {
+          char quantifier = regex.charAt(i);
+          if (quantifier == '?' || quantifier == '*') {
+            atomMinLength = 0;
+            quantified = true;
+            i++;
+          } else if (quantifier == '+') {
+            quantified = true;
+            i++;
+          } else if (quantifier == '{') {
+            int end = regex.indexOf('}', i);
+            if (end < 0) {
+              break;
+            }
+            String bounds = regex.substring(i + 1, end);
+            int comma = bounds.indexOf(',');
+            try {
+              atomMinLength =
+                  Integer.parseInt(comma < 0 ? bounds.trim() : bounds.substring(0, comma).trim());
+            } catch (NumberFormatException e) {
+              break;
+            }
+            quantified = true;
+            i = end + 1;
+          }
+          if (quantified && i < length && (regex.charAt(i) == '?' || regex.charAt(i) == '+')) {
+            // lazy or possessive quantifier
+            i++;
+          }
+        }
+        if (inPrefix && literal != null && atomMinLength > 0) {
+          literalPrefix.append(literal);
+        }
+        if (literal == null || quantified) {
+          inPrefix = false;
+        }
+        minLength += atomMinLength;
+      }
+      prefix[0] = literalPrefix.toString();
+      return minLength;
+    }
+
+    /**
+     * @return the index of the bracket closing the class starting at the index, -1 if there is no
+     *     simple closing bracket
+     */
+    private static int classEnd(String regex, int start) {
+      int i = start + 1;
+      if (i < regex.length() && regex.charAt(i) == '^') {
+        i++;
+      }
+      if (i < regex.length() && regex.charAt(i) == ']') {
+        // a leading ] is a literal
+        i++;
+      }
+      while (i < regex.length()) {
+        char c = regex.charAt(i);
+        if (c == '\\') {
+          i += 2;
+        } else if (c == '[') {
+          // nested classes (union, intersection) are not analyzed
+          return -1;
+        } else if (c == ']') {
+          return i;
+        } else {
+          i++;
+        }
+      }
+      return -1;
+    }
+  }
+}
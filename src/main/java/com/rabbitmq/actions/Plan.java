@@ -0,0 +1,126 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static com.rabbitmq.actions.DeleteReleaseAction.gson;
+
+import com.rabbitmq.actions.DeleteReleaseAction.Release;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The releases to delete in each repository, written by the <code>plan</code> mode and executed by
+ * the <code>apply</code> mode, possibly split in shards.
+ */
+class Plan {
+
+  private final List<RepositoryPlan> repositories = new ArrayList<>();
+
+  void add(String repository, List<Release> releases) {
+    repositories.add(new RepositoryPlan(repository, new ArrayList<>(releases)));
+  }
+
+  List<String> repositories() {
+    return repositories.stream().map(r -> r.repository).toList();
+  }
+
+  /**
+   * @return the releases to delete in the repository, empty if the repository is not in the plan
+   */
+  List<Release> releases(String repository) {
+    return repositories.stream()
+        .filter(r -> r.repository.equals(repository))
+        .findFirst()
+        .map(r -> r.releases)
+        .orElse(List.of());
+  }
+
+  int size() {
+    return repositories.stream().mapToInt(r -> r.releases.size()).sum();
+  }
+
+  /**
+   * The releases of the shard, partitioned by release ID.
+   *
+   * @param index the index of the shard, from 1 to count
+   * @param count the number of shards
+   */
+  Plan shard(int index, int count) {
+    Plan shard = new Plan();
+    for (RepositoryPlan repository : repositories) {
+      shard.add(
+          repository.repository,
+          repository.releases.stream()
+              .filter(r -> Math.floorMod(r.id(), count) == index - 1)
+              .toList());
+    }
+    return shard;
+  }
+
+  /**
+   * Parses a shard parameter, e.g. <code>2/4</code>.
+   *
+   * @return the index of the shard, from 1, and the number of shards
+   */
+  static int[] parseShard(String value) {
+    String[] indexCount = value.trim().split("/");
+    try {
+      if (indexCount.length == 2) {
+        int index = Integer.parseInt(indexCount[0].trim());
+        int count = Integer.parseInt(indexCount[1].trim());
+        if (count > 0 && index > 0 && index <= count) {
+          return new int[] {index, count};
+        }
+      }
+    } catch (NumberFormatException e) {
+      // reported below
+    }
+    throw new IllegalArgumentException(
+        "Parameter shard must be i/n, with n the number of shards and i between 1 and n");
+  }
+
+  void write(Path file) throws IOException {
+    Path parent = file.toAbsolutePath().getParent();
+    Files.createDirectories(parent);
+    Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+    try {
+      try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+        gson().toJson(this, writer);
+      }
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  static Plan read(Path file) throws IOException {
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      Plan plan = gson().fromJson(reader, Plan.class);
+      if (plan == null || plan.repositories == null) {
+        throw new IllegalArgumentException("Not a plan file: " + file);
+      }
+      return plan;
+    }
+  }
+
+  private static class RepositoryPlan {
+
+    private final String repository;
+    private final List<Release> releases;
+
+    private RepositoryPlan(String repository, List<Release> releases) {
+      this.repository = repository;
+      this.releases = releases;
+    }
+  }
+}
@@ -0,0 +1,248 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import com.rabbitmq.actions.DeleteReleaseAction.Release;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary index of the releases of a repository, in listing order (newest first), memory-mapped.
+ *
+ * <p>The file has a header, fixed-size records (ID, publication epoch, offset and length of the tag
+ * and of the name, deletion flag), then the UTF-8 strings. Deleted releases are flagged in place in
+ * the mapped file and dropped when the index is written again.
+ */
+class ReleaseIndex {
+
+  private static final int MAGIC = 0x52494458; // RIDX
+  private static final int VERSION = 1;
+  // magic, version, count, reserved, full listing epoch
+  private static final int HEADER_SIZE = 24;
+  // id, publication, tag offset, tag length, name offset, name length, deleted, reserved
+  private static final int RECORD_SIZE = 40;
+  private static final int DELETED_OFFSET = 32;
+  private static final int NULL_STRING = -1;
+
+  private final MappedByteBuffer buffer;
+  private final int count;
+  private final long fullListingEpoch;
+  private final Map<Long, Integer> positions;
+
+  private ReleaseIndex(MappedByteBuffer buffer) {
+    this.buffer = buffer;
+    if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+      throw new IllegalStateException("Not a release index");
+    }
+    this.count = buffer.getInt(8);
+    this.fullListingEpoch = buffer.getLong(16);
+    if (count < 0 || HEADER_SIZE + (long) count * RECORD_SIZE > buffer.capacity()) {
+      throw new IllegalStateException("Truncated release index");
+    }
+    long stringsSize = buffer.capacity() - HEADER_SIZE - (long) count * RECORD_SIZE;
+    this.positions = new HashMap<>(count * 4 / 3 + 1);
+    for (int i = 0; i < count; i++) {
+      int record = record(i);
+      if (!validString(buffer.getInt(record + 16), buffer.getInt(record + 20), stringsSize)
+          || !validString(buffer.getInt(record + 24), buffer.getInt(record + 28), stringsSize)) {
+        throw new IllegalStateException("Corrupted release index");
+      }
+      positions.put(buffer.getLong(record), i);
+    }
+  }
+
+  private static boolean validString(int offset, int length, long stringsSize) {
+    return length == NULL_STRING || (offset >= 0 && length >= 0 && offset + length <= stringsSize);
+  }
+
+  /**
+   * @return the index, or null if the file does not exist or is not a valid index
+   */
+  static ReleaseIndex open(Path file) {
+    if (!Files.isRegularFile(file)) {
+      return null;
+    }
+    try (FileChannel channel =
+        FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      // the mapping stays valid after the channel is closed
+      return new ReleaseIndex(channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+    } catch (Exception e) {
+      // corrupted index, ignored
+      return null;
+    }
+  }
+
+  static Writer writer(Path file) throws IOException {
+    return new Writer(file);
+  }
+
+  int size() {
+    return count;
+  }
+
+  /** When the releases were last listed entirely, in epoch seconds. */
+  long fullListingEpoch() {
+    return fullListingEpoch;
+  }
+
+  /**
+   * @return the position of the release in the index, -1 if it is not in the index
+   */
+  int position(long id) {
+    Integer position = positions.get(id);
+    return position == null ? -1 : position;
+  }
+
+  long id(int position) {
+    return buffer.getLong(record(position));
+  }
+
+  boolean deleted(int position) {
+    return buffer.getInt(record(position) + DELETED_OFFSET) != 0;
+  }
+
+  /** Flags the release as deleted, it is dropped the next time the index is written. */
+  void markDeleted(long id) {
+    int position = position(id);
+    if (position >= 0) {
+      buffer.putInt(record(position) + DELETED_OFFSET, 1);
+    }
+  }
+
+  /**
+   * @param urlPrefix the API URL of the releases of the repository, the ID is appended to it
+   */
+  Release release(int position, String urlPrefix) {
+    int record = record(position);
+    long id = buffer.getLong(record);
+    return new Release(
+        id,
+        urlPrefix + id,
+        buffer.getLong(record + 8),
+        string(buffer.getInt(record + 16), buffer.getInt(record + 20)),
+        string(buffer.getInt(record + 24), buffer.getInt(record + 28)));
+  }
+
+  private String string(int offset, int length) {
+    if (length == NULL_STRING) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(HEADER_SIZE + count * RECORD_SIZE + offset, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static int record(int position) {
+    return HEADER_SIZE + position * RECORD_SIZE;
+  }
+
+  /**
+   * Writes a new index next to the file and replaces the file atomically on {@link #commit(long)}.
+   *
+   * <p>Records and strings go to 2 temporary files, to stream releases without keeping them in
+   * memory, and are concatenated at the end.
+   */
+  static class Writer implements AutoCloseable {
+
+    private final Path file;
+    private final Path records;
+    private final Path strings;
+    private final DataOutputStream recordsOut;
+    private final OutputStream stringsOut;
+    private int count;
+    private int stringsSize;
+    private boolean committed;
+
+    private Writer(Path file) throws IOException {
+      this.file = file;
+      this.records = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+      this.strings = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+      this.recordsOut =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(records)));
+      this.stringsOut = new BufferedOutputStream(Files.newOutputStream(strings));
+    }
+
+    synchronized void add(Release release) {
+      try {
+        recordsOut.writeLong(release.id());
+        recordsOut.writeLong(release.publicationEpoch());
+        writeString(release.tag());
+        writeString(release.name());
+        recordsOut.writeInt(0);
+        recordsOut.writeInt(0);
+        count++;
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    private void writeString(String value) throws IOException {
+      if (value == null) {
+        recordsOut.writeInt(0);
+        recordsOut.writeInt(NULL_STRING);
+      } else {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        recordsOut.writeInt(stringsSize);
+        recordsOut.writeInt(bytes.length);
+        stringsOut.write(bytes);
+        stringsSize += bytes.length;
+      }
+    }
+
+    /**
+     * @param fullListingEpoch when the releases were last listed entirely
+     * @return the new index
+     */
+    synchronized ReleaseIndex commit(long fullListingEpoch) throws IOException {
+      recordsOut.close();
+      stringsOut.close();
+      Path index = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+      try (FileChannel out = FileChannel.open(index, StandardOpenOption.WRITE)) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(0).putLong(fullListingEpoch);
+        out.write(header.flip());
+        for (Path part : new Path[] {records, strings}) {
+          try (FileChannel in = FileChannel.open(part, StandardOpenOption.READ)) {
+            long position = 0;
+            while (position < in.size()) {
+              position += in.transferTo(position, in.size() - position, out);
+            }
+          }
+        }
+        out.force(true);
+      }
+      Files.move(index, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      committed = true;
+      ReleaseIndex written = open(file);
+      if (written == null) {
+        throw new IOException("Could not read release index " + file);
+      }
+      return written;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+      if (!committed) {
+        recordsOut.close();
+        stringsOut.close();
+      }
+      Files.deleteIfExists(records);
+      Files.deleteIfExists(strings);
+    }
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import com.rabbitmq.actions.DeleteReleaseAction.Release;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Releases stored column by column: IDs and publication dates in primitive arrays, tags, names and
+ * URL prefixes as shared string references.
+ *
+ * <p>Releases are referenced by their row, sets of releases are bit sets of rows. {@link Release}
+ * objects are only created for the releases that are logged or deleted.
+ */
+class ReleaseTable {
+
+  private static final int INITIAL_CAPACITY = 64;
+  // bits of a packed sort key for the row, the publication date gets the rest
+  private static final int ROW_BITS = 31;
+
+  private final Map<String, String> strings = new HashMap<>();
+  private long[] ids = new long[INITIAL_CAPACITY];
+  private long[] epochs = new long[INITIAL_CAPACITY];
+  private String[] tags = new String[INITIAL_CAPACITY];
+  private String[] names = new String[INITIAL_CAPACITY];
+  // the URL without the trailing ID when urlWithId is set for the row, the full URL otherwise
+  private String[] urls = new String[INITIAL_CAPACITY];
+  private final BitSet urlWithId = new BitSet();
+  private int size;
+
+  /**
+   * @return the row of the release
+   */
+  int add(Release release) {
+    if (size == ids.length) {
+      int capacity = size * 2;
+      ids = Arrays.copyOf(ids, capacity);
+      epochs = Arrays.copyOf(epochs, capacity);
+      tags = Arrays.copyOf(tags, capacity);
+      names = Arrays.copyOf(names, capacity);
+      urls = Arrays.copyOf(urls, capacity);
+    }
+    int row = size++;
+    ids[row] = release.id();
+    epochs[row] = release.publicationEpoch();
+    tags[row] = intern(release.tag());
+    names[row] = intern(release.name());
+    String url = release.url();
+    String id = Long.toString(release.id());
+    if (url != null && url.endsWith(id)) {
+      // same prefix for all the releases of a repository
+      urls[row] = intern(url.substring(0, url.length() - id.length()));
+      urlWithId.set(row);
+    } else {
+      urls[row] = url;
+    }
+    return row;
+  }
+
+  private String intern(String value) {
+    return value == null ? null : strings.computeIfAbsent(value, v -> v);
+  }
+
+  int size() {
+    return size;
+  }
+
+  long id(int row) {
+    return ids[row];
+  }
+
+  long publicationEpoch(int row) {
+    return epochs[row];
+  }
+
+  Release release(int row) {
+    String url = urlWithId.get(row) ? urls[row] + ids[row] : urls[row];
+    return new Release(ids[row], url, epochs[row], tags[row], names[row]);
+  }
+
+  /**
+   * @return the releases of the rows, in the order of the rows
+   */
+  List<Release> releases(int[] rows) {
+    List<Release> releases = new ArrayList<>(rows.length);
+    for (int row : rows) {
+      releases.add(release(row));
+    }
+    return releases;
+  }
+
+  /** All the releases, in insertion order, created on access. */
+  List<Release> asList() {
+    return new AbstractList<>() {
+      @Override
+      public Release get(int index) {
+        if (index < 0 || index >= size) {
+          throw new IndexOutOfBoundsException(index);
+        }
+        return release(index);
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /**
+   * Sorts the rows by publication date, oldest first, releases without date first.
+   *
+   * <p>The publication date relative to the oldest one and the row are packed in a long and the
+   * longs are sorted, so equal dates keep the insertion order.
+   */
+  int[] sortedByPublication(BitSet rows) {
+    int[] sorted = rows.stream().toArray();
+    long min = Long.MAX_VALUE;
+    long max = Long.MIN_VALUE;
+    for (int row : sorted) {
+      if (epochs[row] != Release.NO_PUBLICATION) {
+        min = Math.min(min, epochs[row]);
+        max = Math.max(max, epochs[row]);
+      }
+    }
+    if (min <= max
+        && Long.compareUnsigned(max - min, (1L << (Long.SIZE - 1 - ROW_BITS)) - 1) >= 0) {
+      // dates too far apart to be packed
+      return Arrays.stream(sorted)
+          .boxed()
+          .sorted((r1, r2) -> Long.compare(epochs[r1], epochs[r2]))
+          .mapToInt(Integer::intValue)
+          .toArray();
+    }
+    long[] keys = new long[sorted.length];
+    for (int i = 0; i < sorted.length; i++) {
+      int row = sorted[i];
+      // 0 for no date, so they sort first
+      long key = epochs[row] == Release.NO_PUBLICATION ? 0 : epochs[row] - min + 1;
+      keys[i] = (key << ROW_BITS) | row;
+    }
+    Arrays.sort(keys);
+    for (int i = 0; i < keys.length; i++) {
+      sorted[i] = (int) (keys[i] & ((1L << ROW_BITS) - 1));
+    }
+    return sorted;
+  }
+
+  /**
+   * Selects the rows to delete as they come, keeping the rows of the newest releases in a bounded
+   * min-heap of rows ordered by publication date.
+   *
+   * <p>A row evicted from the heap, or older than all the rows in the heap, is a deletion
+   * candidate. Memory for the kept rows is bounded by the number of releases to keep.
+   */
+  class Retention {
+
+    private final int keepLastN;
+    private final int[] heap;
+    private int heapSize;
+    private final BitSet candidates = new BitSet();
+
+    Retention(int keepLastN) {
+      this.keepLastN = keepLastN;
+      this.heap = new int[Math.max(0, keepLastN)];
+    }
+
+    void add(int row) {
+      if (keepLastN <= 0) {
+        // do not want to keep any
+        candidates.set(row);
+      } else if (heapSize < keepLastN) {
+        heap[heapSize] = row;
+        siftUp(heapSize++);
+      } else if (epochs[row] > epochs[heap[0]]) {
+        candidates.set(heap[0]);
+        heap[0] = row;
+        siftDown(0);
+      } else {
+        candidates.set(row);
+      }
+    }
+
+    /** The rows to delete. */
+    BitSet deletionCandidates() {
+      return candidates;
+    }
+
+    /** The rows to keep. */
+    BitSet kept() {
+      BitSet kept = new BitSet();
+      for (int i = 0; i < heapSize; i++) {
+        kept.set(heap[i]);
+      }
+      return kept;
+    }
+
+    private void siftUp(int index) {
+      int row = heap[index];
+      while (index > 0) {
+        int parent = (index - 1) >>> 1;
+        if (epochs[heap[parent]] <= epochs[row]) {
+          break;
+        }
+        heap[index] = heap[parent];
+        index = parent;
+      }
+      heap[index] = row;
+    }
+
+    private void siftDown(int index) {
+      int row = heap[index];
+      int half = heapSize >>> 1;
+      while (index < half) {
+        int child = 2 * index + 1;
+        if (child + 1 < heapSize && epochs[heap[child + 1]] < epochs[heap[child]]) {
+          child++;
+        }
+        if (epochs[row] <= epochs[heap[child]]) {
+          break;
+        }
+        heap[index] = heap[child];
+        index = child;
+      }
+      heap[index] = row;
+    }
+  }
+}
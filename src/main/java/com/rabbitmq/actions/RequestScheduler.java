@@ -0,0 +1,332 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static com.rabbitmq.actions.Utils.logYellow;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Sends all the requests to the GitHub API, pacing them to stay within the rate limit.
+ *
+ * <p>The remaining budget and its reset time come from the <code>X-RateLimit-Remaining</code> and
+ * <code>X-RateLimit-Reset</code> response headers. Until the first response, at most a burst of
+ * requests go out. Requests then go freely while the budget is well above the reserve. When it gets
+ * low, the requests left above the reserve are paced with a token bucket until the reset, and once
+ * only the reserve is left, requests wait for the reset. Responses with status 403 or 429 that
+ * signal a rate limit are retried after the <code>Retry-After</code> delay or the reset.
+ */
+class RequestScheduler {
+
+  static final int DEFAULT_RESERVE = 100;
+
+  private static final int BURST = 10;
+  // requests above the reserve under which requests are paced
+  private static final int LOW_BUDGET = 100;
+  // how long to wait for the first response of a window before trying again, in milliseconds
+  private static final long FIRST_RESPONSE_WAIT = 50;
+  private static final int MAX_RETRIES = 3;
+  // GitHub advises to wait at least one minute when a secondary rate limit has no Retry-After
+  private static final Duration DEFAULT_RETRY_DELAY = Duration.ofMinutes(1);
+
+  private final HttpClient client;
+  private final int reserve;
+  private final LongSupplier clock;
+  private final Metrics metrics;
+  private final Map<String, Budget> budgets = new ConcurrentHashMap<>();
+
+  RequestScheduler(HttpClient client, int reserve) {
+    this(client, reserve, new Metrics());
+  }
+
+  RequestScheduler(HttpClient client, int reserve, Metrics metrics) {
+    this(client, reserve, System::currentTimeMillis, metrics);
+  }
+
+  RequestScheduler(HttpClient client, int reserve, LongSupplier clock) {
+    this(client, reserve, clock, new Metrics());
+  }
+
+  RequestScheduler(HttpClient client, int reserve, LongSupplier clock, Metrics metrics) {
+    this.client = client;
+    this.reserve = reserve;
+    this.clock = clock;
+    this.metrics = metrics;
+  }
+
+  <T> HttpResponse<T> send(HttpRequest request, BodyHandler<T> handler)
+      throws IOException, InterruptedException {
+    return send(request, handler, null);
+  }
+
+  /**
+   * @param listener notified of the response of each attempt, including the ones that are retried,
+   *     can be null
+   */
+  <T> HttpResponse<T> send(HttpRequest request, BodyHandler<T> handler, AttemptListener listener)
+      throws IOException, InterruptedException {
+    Budget budget = budget(resource(request));
+    int attempt = 0;
+    while (true) {
+      budget.acquire();
+      long start = System.nanoTime();
+      HttpResponse<T> response;
+      try {
+        response = client.send(request, counting(discardingRateLimited(handler)));
+      } catch (Exception e) {
+        budget.failed();
+        throw e;
+      }
+      long latency = System.nanoTime() - start;
+      metrics.request(request, latency);
+      if (listener != null) {
+        listener.attempt(response, latency);
+      }
+      budget.update(response.headers());
+      Duration retryDelay = retryDelay(response.statusCode(), response.headers());
+      if (retryDelay == null || attempt == MAX_RETRIES) {
+        return response;
+      }
+      attempt++;
+      metrics.retry();
+      logYellow(
+          "Rate limited (%d) on %s %s, retrying in %d second(s).",
+          response.statusCode(), request.method(), request.uri().getPath(), retryDelay.toSeconds());
+      sleep(retryDelay.toMillis());
+    }
+  }
+
+  /** The rate limit resource of the request, GraphQL and REST have separate budgets. */
+  private static String resource(HttpRequest request) {
+    return request.uri().getPath().endsWith("/graphql") ? "graphql" : "core";
+  }
+
+  private <T> BodyHandler<T> discardingRateLimited(BodyHandler<T> handler) {
+    return info ->
+        retryDelay(info.statusCode(), info.headers()) == null
+            ? handler.apply(info)
+            : BodySubscribers.replacing(null);
+  }
+
+  /** Counts the bytes of the response body as they arrive. */
+  private <T> BodyHandler<T> counting(BodyHandler<T> handler) {
+    return info -> {
+      BodySubscriber<T> subscriber = handler.apply(info);
+      return new BodySubscriber<>() {
+        @Override
+        public CompletionStage<T> getBody() {
+          return subscriber.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+          subscriber.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+          metrics.received(item);
+          subscriber.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+          subscriber.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+          subscriber.onComplete();
+        }
+      };
+    };
+  }
+
+  /**
+   * @return how long to wait before retrying, or null if the response does not signal a rate limit
+   */
+  Duration retryDelay(int statusCode, HttpHeaders headers) {
+    if (statusCode != 403 && statusCode != 429) {
+      return null;
+    }
+    long retryAfter = headers.firstValueAsLong("retry-after").orElse(-1);
+    if (retryAfter >= 0) {
+      return Duration.ofSeconds(retryAfter);
+    }
+    if (headers.firstValueAsLong("x-ratelimit-remaining").orElse(-1) == 0) {
+      long reset = headers.firstValueAsLong("x-ratelimit-reset").orElse(0) * 1000;
+      return Duration.ofMillis(Math.max(1000, reset - clock.getAsLong()));
+    }
+    // a 403 without rate limit headers is a permission problem, not worth retrying
+    return statusCode == 429 ? DEFAULT_RETRY_DELAY : null;
+  }
+
+  private static void sleep(long millis) throws InterruptedException {
+    if (millis > 0) {
+      Thread.sleep(millis);
+    }
+  }
+
+  /** The budget of a rate limit resource, with the token bucket that paces its requests. */
+  class Budget {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // unknown until the first response
+    private long remaining = -1;
+    private long resetMillis;
+    // whether the first response of the window is still expected
+    private boolean firstRound = true;
+    // requests sent in the first round
+    private int firstRoundRequests;
+    private double tokens = BURST;
+    private long lastRefill = clock.getAsLong();
+
+    /**
+     * Takes a token for a request.
+     *
+     * @return 0 if the request can go, otherwise how long to wait (in milliseconds) before trying
+     *     again
+     */
+    long tryAcquire() {
+      lock.lock();
+      try {
+        long now = clock.getAsLong();
+        if (remaining >= 0 && now >= resetMillis) {
+          // new window, the first response will tell the new budget
+          remaining = -1;
+          firstRound = true;
+          firstRoundRequests = 0;
+          tokens = BURST;
+          lastRefill = now;
+        }
+        if (remaining < 0) {
+          if (!firstRound) {
+            // responses without rate limit headers, nothing to pace
+            return 0;
+          }
+          if (firstRoundRequests < BURST) {
+            firstRoundRequests++;
+            return 0;
+          }
+          return FIRST_RESPONSE_WAIT;
+        }
+        long available = remaining - reserve;
+        if (available <= 0) {
+          return resetMillis - now;
+        }
+        if (available > LOW_BUDGET) {
+          // counts the request before its response to not overshoot with concurrent requests
+          remaining--;
+          tokens = BURST;
+          lastRefill = now;
+          return 0;
+        }
+        double ratePerMilli = (double) available / (resetMillis - now);
+        tokens = Math.min(BURST, tokens + (now - lastRefill) * ratePerMilli);
+        lastRefill = now;
+        if (tokens >= 1) {
+          tokens -= 1;
+          // counts the request before its response to not overshoot with concurrent requests
+          remaining--;
+          return 0;
+        } else {
+          return Math.max(1, (long) Math.ceil((1 - tokens) / ratePerMilli));
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void acquire() throws InterruptedException {
+      long wait;
+      boolean logged = false;
+      while ((wait = tryAcquire()) > 0) {
+        if (wait >= 1000 && !logged) {
+          logYellow("Rate limit budget low, waiting %d second(s).", wait / 1000);
+          logged = true;
+        }
+        sleep(wait);
+      }
+    }
+
+    /** A request of the first round failed without response, another one can go. */
+    private void failed() {
+      lock.lock();
+      try {
+        if (firstRound && firstRoundRequests > 0) {
+          firstRoundRequests--;
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    void update(HttpHeaders headers) {
+      lock.lock();
+      try {
+        // the first round is over with any response
+        firstRound = false;
+      } finally {
+        lock.unlock();
+      }
+      long headerRemaining = headers.firstValueAsLong("x-ratelimit-remaining").orElse(-1);
+      long headerReset = headers.firstValueAsLong("x-ratelimit-reset").orElse(-1) * 1000;
+      if (headerRemaining < 0 || headerReset < 0) {
+        return;
+      }
+      lock.lock();
+      try {
+        if (remaining < 0 || headerReset > resetMillis) {
+          remaining = headerRemaining;
+          resetMillis = headerReset;
+        } else {
+          // responses can arrive out of order, the lowest value is the most recent
+          remaining = Math.min(remaining, headerRemaining);
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    long remaining() {
+      lock.lock();
+      try {
+        return remaining;
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  Budget budget(String resource) {
+    return budgets.computeIfAbsent(resource, r -> new Budget());
+  }
+
+  interface AttemptListener {
+
+    /**
+     * @param response the response, its body is null if the request is retried
+     * @param latencyNanos the time the request took
+     */
+    void attempt(HttpResponse<?> response, long latencyNanos);
+  }
+}
@@ -7,15 +7,55 @@ package com.rabbitmq.actions;
 
 import static java.lang.String.format;
 
+import java.io.PrintStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 abstract class Utils {
 
+  // number of items in the log line of a list, the rest is counted
+  static final int LOG_SAMPLE_SIZE = 10;
+
+  private static volatile boolean verbose = false;
+  private static volatile boolean logWriterStarted = false;
+
+  // started with the first log line, so the paths that do not log start no thread
+  private static final class LogWriter {
+
+    // log lines, or latches to signal once the previous lines are written
+    private static final BlockingQueue<Object> QUEUE = new LinkedBlockingQueue<>();
+
+    static {
+      // a single thread writes the log lines, so logging threads do not contend on the output
+      Thread writer = new Thread(Utils::writeLogs, "log-writer");
+      writer.setDaemon(true);
+      writer.start();
+      Runtime.getRuntime().addShutdownHook(new Thread(Utils::flushLogs, "log-flush"));
+      logWriterStarted = true;
+    }
+  }
+
+  // inherited by the threads a repository uses
+  private static final InheritableThreadLocal<String> LOG_PREFIX =
+      new InheritableThreadLocal<>() {
+        @Override
+        protected String initialValue() {
+          return "";
+        }
+      };
+
   static void testSequence() {
     Consumer<String> display = Utils::logGreen;
     String message;
@@ -56,6 +96,106 @@ abstract class Utils {
   }
 
   static void log(String message, Object... args) {
-    System.out.printf((message) + "%n", args);
+    LogWriter.QUEUE.add(LOG_PREFIX.get() + format(message, args));
+  }
+
+  /** Whether full lists are logged, with the verbose parameter or when debug logging is enabled. */
+  static void verbose(boolean value) {
+    verbose = value;
+  }
+
+  static boolean verbose() {
+    return verbose;
+  }
+
+  /**
+   * Logs all the items in a collapsible group of the GitHub Actions log, only in verbose mode.
+   *
+   * <p>The group is logged at once, so the lines of concurrent repositories do not end up in it.
+   */
+  static <T> void logGroup(String title, Collection<T> items, Function<T, String> format) {
+    if (!verbose || items.isEmpty()) {
+      return;
+    }
+    String prefix = LOG_PREFIX.get();
+    StringBuilder group = new StringBuilder();
+    // workflow commands must start the line
+    group.append("::group::").append(prefix).append(title).append(" (").append(items.size());
+    group.append(")").append(System.lineSeparator());
+    for (T item : items) {
+      group.append(prefix).append(format.apply(item)).append(System.lineSeparator());
+    }
+    group.append("::endgroup::");
+    LogWriter.QUEUE.add(group.toString());
+  }
+
+  /**
+   * @return the first items, separated by commas, with the number of the other items
+   */
+  static <T> String sample(Collection<T> items, Function<T, String> format) {
+    return sample(items, items.size(), format);
+  }
+
+  /**
+   * @param total the number of items, when the collection has only the first ones
+   * @return the first items, separated by commas, with the number of the other items
+   */
+  static <T> String sample(Collection<T> items, int total, Function<T, String> format) {
+    StringBuilder sample = new StringBuilder();
+    int count = 0;
+    for (T item : items) {
+      if (count == LOG_SAMPLE_SIZE) {
+        break;
+      }
+      sample.append(count == 0 ? "" : ", ").append(format.apply(item));
+      count++;
+    }
+    if (total > count) {
+      sample.append(String.format(", and %d more", total - count));
+    }
+    return sample.toString();
+  }
+
+  /** Waits for the log lines of all the threads to be written. */
+  static void flushLogs() {
+    if (!logWriterStarted) {
+      // nothing logged
+      return;
+    }
+    CountDownLatch written = new CountDownLatch(1);
+    LogWriter.QUEUE.add(written);
+    try {
+      written.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void writeLogs() {
+    List<Object> batch = new ArrayList<>();
+    while (true) {
+      try {
+        batch.add(LogWriter.QUEUE.take());
+      } catch (InterruptedException e) {
+        return;
+      }
+      LogWriter.QUEUE.drainTo(batch);
+      PrintStream out = System.out;
+      for (Object entry : batch) {
+        if (entry instanceof CountDownLatch written) {
+          out.flush();
+          written.countDown();
+        } else {
+          out.println(entry);
+        }
+      }
+      out.flush();
+      batch.clear();
+    }
+  }
+
+  /** Sets the prefix of the log lines of the current thread and of the threads it starts. */
+  static void logPrefix(String prefix) {
+    LOG_PREFIX.set(prefix);
   }
 }
@@ -0,0 +1,117 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.rabbitmq.actions.AdaptiveLimiter.Permit;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+public class AdaptiveLimiterTest {
+
+  static final long LATENCY = Duration.ofMillis(100).toNanos();
+
+  AtomicLong clock = new AtomicLong();
+
+  void succeed(AdaptiveLimiter limiter, int count, long latency) throws Exception {
+    for (int i = 0; i < count; i++) {
+      try (Permit permit = limiter.acquire()) {
+        clock.incrementAndGet();
+        permit.succeeded(latency);
+      }
+    }
+  }
+
+  @Test
+  void limitShouldIncreaseAdditivelyUpToTheMaximum() throws Exception {
+    AdaptiveLimiter limiter = new AdaptiveLimiter("Test", 4, clock::get);
+    assertThat(limiter.limit()).isEqualTo(1);
+    succeed(limiter, 1, LATENCY);
+    assertThat(limiter.limit()).isEqualTo(2);
+    // about a full window per step
+    succeed(limiter, 3, LATENCY);
+    assertThat(limiter.limit()).isEqualTo(3);
+    succeed(limiter, 4, LATENCY);
+    assertThat(limiter.limit()).isEqualTo(4);
+    succeed(limiter, 100, LATENCY);
+    assertThat(limiter.limit()).isEqualTo(4);
+  }
+
+  @Test
+  void throttlingShouldHalveTheLimitOncePerWindow() throws Exception {
+    AdaptiveLimiter limiter = new AdaptiveLimiter("Test", 64, clock::get);
+    succeed(limiter, 200, LATENCY);
+    assertThat(limiter.limit()).isEqualTo(20);
+
+    List<Permit> window = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      window.add(limiter.acquire());
+    }
+    clock.incrementAndGet();
+    // all the requests of the window are throttled, the limit is halved once
+    window.forEach(p -> p.throttled("429"));
+    assertThat(limiter.limit()).isEqualTo(10);
+    window.forEach(Permit::close);
+    assertThat(limiter.inFlight()).isZero();
+
+    // a request started after the decrease decreases the limit again
+    try (Permit permit = limiter.acquire()) {
+      clock.incrementAndGet();
+      permit.throttled("secondary rate limit");
+    }
+    assertThat(limiter.limit()).isEqualTo(5);
+
+    for (int i = 0; i < 10; i++) {
+      try (Permit permit = limiter.acquire()) {
+        clock.incrementAndGet();
+        permit.throttled("429");
+      }
+    }
+    assertThat(limiter.limit()).isEqualTo(1);
+  }
+
+  @Test
+  void latencySpikeShouldReduceTheLimit() throws Exception {
+    AdaptiveLimiter limiter = new AdaptiveLimiter("Test", 64, clock::get);
+    succeed(limiter, 200, LATENCY);
+    assertThat(limiter.limit()).isEqualTo(20);
+    // slower, but not a spike
+    succeed(limiter, 1, 2 * LATENCY);
+    assertThat(limiter.limit()).isEqualTo(20);
+    succeed(limiter, 1, 10 * LATENCY);
+    assertThat(limiter.limit()).isEqualTo(16);
+  }
+
+  @Test
+  void acquireShouldWaitForTheLimit() throws Exception {
+    AdaptiveLimiter limiter = new AdaptiveLimiter("Test", 4, clock::get);
+    Permit permit = limiter.acquire();
+    CompletableFuture<Permit> waiting =
+        CompletableFuture.supplyAsync(
+            () -> {
+              try {
+                return limiter.acquire();
+              } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+              }
+            },
+            Executors.newVirtualThreadPerTaskExecutor());
+    Thread.sleep(100);
+    assertThat(waiting).isNotDone();
+    permit.close();
+    // closing twice releases once
+    permit.close();
+    waiting.get(10, TimeUnit.SECONDS).close();
+    assertThat(limiter.inFlight()).isZero();
+  }
+}
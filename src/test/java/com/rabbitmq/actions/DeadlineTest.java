@@ -0,0 +1,58 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+public class DeadlineTest {
+
+  @Test
+  void budgetShouldBeParsedWithUnits() {
+    assertThat(Deadline.parseBudget("90")).isEqualTo(Duration.ofSeconds(90));
+    assertThat(Deadline.parseBudget("90s")).isEqualTo(Duration.ofSeconds(90));
+    assertThat(Deadline.parseBudget(" 15m ")).isEqualTo(Duration.ofMinutes(15));
+    assertThat(Deadline.parseBudget("2H")).isEqualTo(Duration.ofHours(2));
+    for (String invalid : List.of("", "0", "-1m", "m", "1d", "ten")) {
+      assertThatThrownBy(() -> Deadline.parseBudget(invalid))
+          .as(invalid)
+          .isInstanceOf(IllegalArgumentException.class);
+    }
+  }
+
+  @Test
+  void deletionShouldStartOnlyIfExpectedToEndBeforeDeadline() {
+    AtomicLong clock = new AtomicLong();
+    // 100 seconds, with a 10-second reserve
+    Deadline deadline = new Deadline(Duration.ofSeconds(100), clock::get);
+    assertThat(deadline.canStart()).isTrue();
+
+    deadline.deleted(TimeUnit.SECONDS.toNanos(20));
+    assertThat(deadline.deletionLatency()).isEqualTo(Duration.ofSeconds(20));
+    clock.set(TimeUnit.SECONDS.toNanos(70));
+    assertThat(deadline.canStart()).isTrue();
+    clock.set(TimeUnit.SECONDS.toNanos(71));
+    assertThat(deadline.canStart()).isFalse();
+    assertThat(deadline.remaining()).isEqualTo(Duration.ofSeconds(29));
+
+    // faster deletions, the average goes down
+    for (int i = 0; i < 20; i++) {
+      deadline.deleted(TimeUnit.SECONDS.toNanos(1));
+    }
+    assertThat(deadline.deletionLatency()).isLessThan(Duration.ofSeconds(2));
+    assertThat(deadline.canStart()).isTrue();
+
+    clock.set(TimeUnit.SECONDS.toNanos(200));
+    assertThat(deadline.canStart()).isFalse();
+    assertThat(deadline.remaining()).isZero();
+  }
+}
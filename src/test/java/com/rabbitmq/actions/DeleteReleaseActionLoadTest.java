@@ -0,0 +1,224 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Runs the action end to end against {@link FakeGitHubApi} and reports wall time, request count and
+ * peak heap.
+ *
+ * <p>The size is small by default to keep the build fast, use e.g. <code>
+ * ./mvnw test -Dtest=DeleteReleaseActionLoadTest -Dload-test.releases=20000
+ * -Dload-test.latency-ms=20</code> for scaling numbers.
+ */
+public class DeleteReleaseActionLoadTest {
+
+  private static final String REPOSITORY = "rabbitmq/load-test";
+
+  static Report run(FakeGitHubApi api, Map<String, String> inputs) {
+    Map<String, String> env = new HashMap<>();
+    env.put("GITHUB_API_URL", api.url());
+    env.put("INPUT_REPOSITORY", REPOSITORY);
+    env.put("INPUT_TOKEN", "token");
+    env.put("INPUT_RATE-LIMIT-RESERVE", "0");
+    env.putAll(inputs);
+    System.gc();
+    List<MemoryPoolMXBean> heapPools =
+        ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(p -> p.getType() == MemoryType.HEAP)
+            .collect(Collectors.toList());
+    heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+    long requestsBefore = api.requestCount();
+    long start = System.nanoTime();
+    int exitCode = DeleteReleaseAction.run(env);
+    Duration wallTime = Duration.ofNanos(System.nanoTime() - start);
+    long peakHeap = heapPools.stream().mapToLong(p -> p.getPeakUsage().getUsed()).sum();
+    return new Report(exitCode, wallTime, api.requestCount() - requestsBefore, peakHeap);
+  }
+
+  @Test
+  void deleteAllButTheLastReleases() throws Exception {
+    int releaseCount = Integer.getInteger("load-test.releases", 1000);
+    int latencyMs = Integer.getInteger("load-test.latency-ms", 0);
+    int keepLastN = 10;
+    try (FakeGitHubApi api =
+        new FakeGitHubApi()
+            .releases(REPOSITORY, releaseCount)
+            .latency(Duration.ofMillis(latencyMs))) {
+      Report report =
+          run(
+              api,
+              Map.of(
+                  "INPUT_TAG-FILTER", "^v1.0.0-SNAPSHOT-[0-9]+$",
+                  "INPUT_KEEP-LAST-N", String.valueOf(keepLastN),
+                  "INPUT_MAX-CONCURRENCY", "8",
+                  "INPUT_CONSISTENCY", "batched"));
+
+      System.out.printf(
+          "Load test: %d release(s), %d ms latency: %s%n", releaseCount, latencyMs, report);
+      assertThat(report.exitCode()).isZero();
+      assertThat(api.releaseIds(REPOSITORY))
+          .containsExactlyElementsOf(
+              LongStream.rangeClosed(releaseCount - keepLastN + 1, releaseCount).boxed().toList());
+      assertThat(api.tags(REPOSITORY)).hasSize(keepLastN);
+      assertThat(api.requestCount("DELETE")).isEqualTo(2 * (releaseCount - keepLastN));
+    }
+  }
+
+  @Test
+  void tagLookupsShouldFetchOnlyTheReleasesOfTheMatchingTags() throws Exception {
+    int releaseCount = 3000;
+    try (FakeGitHubApi api = new FakeGitHubApi().releases(REPOSITORY, releaseCount)) {
+      for (int i = 1; i <= 20; i++) {
+        api.release(REPOSITORY, releaseCount + i, "v2.0.0-rc." + i);
+      }
+      Report report =
+          run(
+              api,
+              Map.of(
+                  "INPUT_TAG-FILTER", "^v2\\.0\\.0-rc\\.[0-9]+$",
+                  "INPUT_KEEP-LAST-N", "5",
+                  "INPUT_MAX-CONCURRENCY", "4",
+                  "INPUT_CONSISTENCY", "none"));
+
+      assertThat(report.exitCode()).isZero();
+      assertThat(api.releaseIds(REPOSITORY))
+          .hasSize(releaseCount + 5)
+          .endsWith(
+              LongStream.rangeClosed(releaseCount + 16, releaseCount + 20)
+                  .boxed()
+                  .toArray(Long[]::new));
+      // the tag listing, the first page of releases for drafts, and a lookup per tag
+      assertThat(api.requestCount("GET")).isEqualTo(2 + 20);
+    }
+  }
+
+  @Test
+  void transientErrorsShouldBeRetried() throws Exception {
+    try (FakeGitHubApi api = new FakeGitHubApi().releases(REPOSITORY, 300).errors(7, 429)) {
+      Report report =
+          run(
+              api,
+              Map.of(
+                  "INPUT_TAG-FILTER", "^v1.0.0-SNAPSHOT-[0-9]+$",
+                  "INPUT_KEEP-LAST-N", "5",
+                  "INPUT_MAX-CONCURRENCY", "4",
+                  "INPUT_CONSISTENCY", "none"));
+
+      assertThat(report.exitCode()).isZero();
+      assertThat(api.releaseIds(REPOSITORY)).hasSize(5);
+      assertThat(api.tags(REPOSITORY)).hasSize(5);
+    }
+  }
+
+  @Test
+  void adaptiveConcurrencyShouldBackOffOnRateLimits() throws Exception {
+    try (FakeGitHubApi api = new FakeGitHubApi().releases(REPOSITORY, 300).errors(11, 429)) {
+      Report report =
+          run(
+              api,
+              Map.of(
+                  "INPUT_TAG-FILTER", "^v1.0.0-SNAPSHOT-[0-9]+$",
+                  "INPUT_KEEP-LAST-N", "5",
+                  "INPUT_CONCURRENCY-CONTROL", "adaptive",
+                  "INPUT_MAX-CONCURRENCY", "8",
+                  "INPUT_CONSISTENCY", "none"));
+
+      assertThat(report.exitCode()).isZero();
+      assertThat(api.releaseIds(REPOSITORY)).hasSize(5);
+      assertThat(api.tags(REPOSITORY)).hasSize(5);
+    }
+  }
+
+  @Test
+  void planThenApplyInShards(@TempDir Path directory) throws Exception {
+    String planFile = directory.resolve("plan.json").toString();
+    try (FakeGitHubApi api = new FakeGitHubApi().releases(REPOSITORY, 250)) {
+      Report plan =
+          run(
+              api,
+              Map.of(
+                  "INPUT_MODE", "plan",
+                  "INPUT_PLAN-FILE", planFile,
+                  "INPUT_TAG-FILTER", "^v1.0.0-SNAPSHOT-[0-9]+$",
+                  "INPUT_KEEP-LAST-N", "10"));
+      assertThat(plan.exitCode()).isZero();
+      assertThat(api.requestCount("DELETE")).isZero();
+      assertThat(api.releaseIds(REPOSITORY)).hasSize(250);
+
+      long listingRequests = api.requestCount("GET");
+      for (int shard = 1; shard <= 3; shard++) {
+        Report apply =
+            run(
+                api,
+                Map.of(
+                    "INPUT_MODE", "apply",
+                    "INPUT_PLAN-FILE", planFile,
+                    "INPUT_SHARD", shard + "/3",
+                    "INPUT_MAX-CONCURRENCY", "4",
+                    "INPUT_CONSISTENCY", "none"));
+        assertThat(apply.exitCode()).isZero();
+      }
+      // the shards do not list the releases
+      assertThat(api.requestCount("GET")).isEqualTo(listingRequests);
+      assertThat(api.requestCount("DELETE")).isEqualTo(2 * 240);
+      assertThat(api.releaseIds(REPOSITORY))
+          .containsExactlyElementsOf(LongStream.rangeClosed(241, 250).boxed().toList());
+    }
+  }
+
+  static class Report {
+
+    private final int exitCode;
+    private final Duration wallTime;
+    private final long requests;
+    private final long peakHeap;
+
+    Report(int exitCode, Duration wallTime, long requests, long peakHeap) {
+      this.exitCode = exitCode;
+      this.wallTime = wallTime;
+      this.requests = requests;
+      this.peakHeap = peakHeap;
+    }
+
+    int exitCode() {
+      return exitCode;
+    }
+
+    Duration wallTime() {
+      return wallTime;
+    }
+
+    long requests() {
+      return requests;
+    }
+
+    long peakHeap() {
+      return peakHeap;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "exit code %d, wall time %d ms, %d request(s), peak heap %d MB",
+          exitCode, wallTime.toMillis(), requests, peakHeap / (1024 * 1024));
+    }
+  }
+}
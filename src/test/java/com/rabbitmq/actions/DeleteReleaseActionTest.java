@@ -7,13 +7,25 @@ package com.rabbitmq.actions;
 
 import static com.rabbitmq.actions.DeleteReleaseAction.*;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import com.rabbitmq.actions.DeleteReleaseAction.Release;
+import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.Test;
 
 public class DeleteReleaseActionTest {
@@ -114,7 +126,7 @@ public class DeleteReleaseActionTest {
 
     assertThat(filterForDeletion(releases, 3).stream().mapToLong(r -> r.id()))
         .hasSize(7)
-        .containsExactlyInAnyOrder(42L, 1L, 2L, 3L, 4L, 5L, 6L);
+        .containsExactly(42L, 1L, 2L, 3L, 4L, 5L, 6L);
 
     assertThat(filterForDeletion(releases, releases.size() - 1).stream().mapToLong(r -> r.id()))
         .hasSize(1)
@@ -122,13 +134,328 @@ public class DeleteReleaseActionTest {
 
     assertThat(filterForDeletion(releases, releases.size() - 2).stream().mapToLong(r -> r.id()))
         .hasSize(2)
-        .containsExactlyInAnyOrder(42L, 1L);
+        .containsExactly(42L, 1L);
 
     assertThat(filterForDeletion(releases, 0)).hasSameSizeAs(releases).hasSameElementsAs(releases);
 
     assertThat(filterForDeletion(releases, releases.size() + 1)).isEmpty();
   }
 
+  @Test
+  void deleteReleasesShouldBoundConcurrencyAndAggregateFailures() {
+    int maxConcurrency = 3;
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    ReleaseAccess access =
+        new StubReleaseAccess() {
+          @Override
+          public void delete(Release release) {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+              Thread.sleep(10);
+            } catch (InterruptedException e) {
+              throw new RuntimeException(e);
+            } finally {
+              inFlight.decrementAndGet();
+            }
+            if (release.id() % 5 == 0) {
+              throw new IllegalStateException("boom");
+            }
+          }
+        };
+
+    List<Release> releases =
+        IntStream.range(0, 20).mapToObj(i -> rTag(i, "v" + i)).collect(Collectors.toList());
+
+    DeletionResult result = deleteReleases(access, releases, maxConcurrency, Consistency.STRICT);
+
+    assertThat(maxInFlight).hasValueBetween(1, maxConcurrency);
+    assertThat(result.deleted()).hasSize(16);
+    assertThat(result.failures().keySet().stream().mapToLong(Release::id))
+        .containsExactlyInAnyOrder(0L, 5L, 10L, 15L);
+  }
+
+  @Test
+  void deleteReleasesShouldDeleteOldestFirstWithinTimeBudget() {
+    AtomicLong clock = new AtomicLong();
+    List<Long> deleted = new ArrayList<>();
+    ReleaseAccess access =
+        new StubReleaseAccess() {
+          @Override
+          public void delete(Release release) {
+            deleted.add(release.id());
+            // each deletion takes 1 second
+            clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+          }
+        };
+    Deadline deadline = new Deadline(Duration.ofMillis(5500), clock::get);
+    List<Release> releases =
+        List.of(
+            rDate(3L, "2021-01-03"),
+            rDate(1L, "2021-01-01"),
+            rDate(6L, "2021-01-06"),
+            rDate(4L, "2021-01-04"),
+            rDate(2L, "2021-01-02"),
+            rDate(5L, "2021-01-05"));
+
+    DeletionResult result = deleteReleases(access, releases, 1, Consistency.NONE, deadline);
+
+    // the 5th deletion would end after the deadline minus the reserve
+    assertThat(deleted).containsExactly(1L, 2L, 3L, 4L);
+    assertThat(result.deleted()).hasSize(4);
+    assertThat(result.remaining().stream().mapToLong(Release::id)).containsExactly(5L, 6L);
+  }
+
+  @Test
+  void deleteReleasesShouldWaitForDeletionOnlyInStrictMode() {
+    AtomicInteger waits = new AtomicInteger();
+    ReleaseAccess access =
+        new StubReleaseAccess() {
+          @Override
+          public void waitForDeletion(Release release) {
+            waits.incrementAndGet();
+          }
+        };
+    List<Release> releases = List.of(rTag(1, "v1"), rTag(2, "v2"));
+
+    deleteReleases(access, releases, 1, Consistency.NONE);
+    deleteReleases(access, releases, 1, Consistency.BATCHED);
+    assertThat(waits).hasValue(0);
+
+    deleteReleases(access, releases, 1, Consistency.STRICT);
+    assertThat(waits).hasValue(2);
+  }
+
+  @Test
+  void deleteReleasesShouldDeleteTagsOnceWhenAccessBatchesTagDeletion() {
+    List<List<Release>> tagBatches = new ArrayList<>();
+    AtomicInteger waits = new AtomicInteger();
+    ReleaseAccess access =
+        new StubReleaseAccess() {
+          @Override
+          public void delete(Release release) {
+            if (release.id() == 1) {
+              throw new IllegalStateException("boom");
+            }
+          }
+
+          @Override
+          public boolean deletesTagsInBatch() {
+            return true;
+          }
+
+          @Override
+          public Map<Release, Exception> deleteTags(List<Release> releases) {
+            tagBatches.add(releases);
+            return releases.stream()
+                .filter(r -> r.id() == 2)
+                .collect(Collectors.toMap(r -> r, r -> new IllegalStateException("tag")));
+          }
+
+          @Override
+          public void waitForDeletion(Release release) {
+            waits.incrementAndGet();
+          }
+        };
+    List<Release> releases = List.of(rTag(1, "v1"), rTag(2, "v2"), rTag(3, "v3"), rTag(4, "v4"));
+
+    DeletionResult result = deleteReleases(access, releases, 2, Consistency.STRICT);
+
+    assertThat(tagBatches).hasSize(1);
+    assertThat(tagBatches.get(0).stream().mapToLong(Release::id))
+        .containsExactlyInAnyOrder(2L, 3L, 4L);
+    assertThat(result.deleted().stream().mapToLong(Release::id)).containsExactlyInAnyOrder(3L, 4L);
+    assertThat(result.failures().keySet().stream().mapToLong(Release::id))
+        .containsExactlyInAnyOrder(1L, 2L);
+    assertThat(waits).hasValue(2);
+  }
+
+  @Test
+  void verifyDeletionsShouldReturnReleasesStillListedOrTagged() {
+    ReleaseAccess access =
+        new StubReleaseAccess() {
+          @Override
+          public void list(Consumer<Release> consumer) {
+            List.of(rTag(1, "v1"), rTag(10, "v10")).forEach(consumer);
+          }
+
+          @Override
+          public Set<String> tags() {
+            return Set.of("v1", "v2", "v10");
+          }
+        };
+    List<Release> deleted = List.of(rTag(1, "v1"), rTag(2, "v2"), rTag(3, "v3"));
+
+    assertThat(verifyDeletions(access, deleted).stream().mapToLong(Release::id))
+        .containsExactly(1L, 2L);
+  }
+
+  @Test
+  void consistencyShouldBeParsedCaseInsensitively() {
+    assertThat(Consistency.from("none")).isEqualTo(Consistency.NONE);
+    assertThat(Consistency.from("Batched ")).isEqualTo(Consistency.BATCHED);
+    assertThat(Consistency.from("STRICT")).isEqualTo(Consistency.STRICT);
+    assertThatThrownBy(() -> Consistency.from("eventual"))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void repositoryEntriesAndGlobs() {
+    assertThat(repositoryEntries("rabbitmq/a")).containsExactly("rabbitmq/a");
+    assertThat(repositoryEntries("rabbitmq/a, rabbitmq/b\nrabbitmq/*-dev\n"))
+        .containsExactly("rabbitmq/a", "rabbitmq/b", "rabbitmq/*-dev");
+    assertThat(globPattern("*-binaries-dev").matcher("rabbitmq-server-binaries-dev").matches())
+        .isTrue();
+    assertThat(globPattern("*-binaries-dev").matcher("rabbitmq-server").matches()).isFalse();
+    assertThat(globPattern("repo-?.x").matcher("repo-1.x").matches()).isTrue();
+    assertThat(globPattern("repo-?.x").matcher("repo-1-x").matches()).isFalse();
+  }
+
+  @Test
+  void processRepositoriesShouldReportResultsInOrder() {
+    Params params = new Params("v.*", null, 1, 1, Consistency.NONE);
+    List<RepositoryResult> results =
+        processRepositories(
+            List.of("owner/a", "owner/b", "owner/c"),
+            params,
+            "token",
+            input -> {
+              if ("b".equals(input.source().repository())) {
+                throw new IllegalStateException("no access");
+              }
+              return new StubReleaseAccess() {
+                @Override
+                public void list(Consumer<Release> consumer) {
+                  List.of(rDate(1, "2021-01-01"), rDate(2, "2021-01-02")).stream()
+                      .map(r -> new Release(r.id(), null, r.publication(), "v" + r.id(), null))
+                      .forEach(consumer);
+                }
+              };
+            },
+            2);
+
+    assertThat(results.stream().map(RepositoryResult::repository))
+        .containsExactly("owner/a", "owner/b", "owner/c");
+    assertThat(results.get(0).deleted()).isEqualTo(1);
+    assertThat(results.get(1).error()).hasMessage("no access");
+    assertThat(results.get(2).deleted()).isEqualTo(1);
+  }
+
+  @Test
+  void tagPrefixesShouldCoverAllPolicies() {
+    assertThat(
+            tagPrefixes(
+                Policy.parse(
+                    "[{\"tag-filter\": \"^v1\\\\.2.*\\nv1.*\", \"keep-last-n\": 2},"
+                        + " {\"tag-filter\": \"^rc-[0-9]+$\", \"name-filter\": \"x\","
+                        + " \"keep-last-n\": 1}]")))
+        .containsExactly("rc-", "v1");
+    assertThat(
+            tagPrefixes(Policy.parse("[{\"tag-filter\": \"v1.*\\n.*-rc\", \"keep-last-n\": 1}]")))
+        .isEmpty();
+    assertThat(
+            tagPrefixes(
+                Policy.parse(
+                    "[{\"tag-filter\": \"v1.*\", \"keep-last-n\": 1},"
+                        + " {\"name-filter\": \"nightly\", \"keep-last-n\": 1}]")))
+        .isEmpty();
+  }
+
+  @Test
+  void policiesShouldBeParsedFromJson() {
+    List<Policy> policies =
+        Policy.parse(
+            "[{\"tag-filter\": \"^v1.*\", \"keep-last-n\": 2},"
+                + " {\"name-filter\": \"nightly\", \"keep-last-n\": \"0\"}]");
+    assertThat(policies).hasSize(2);
+    assertThat(policies.get(0).tagFilter()).isEqualTo("^v1.*");
+    assertThat(policies.get(0).nameFilter()).isNull();
+    assertThat(policies.get(0).keepLastN()).isEqualTo(2);
+    assertThat(policies.get(1).tagFilter()).isNull();
+    assertThat(policies.get(1).nameFilter()).isEqualTo("nightly");
+    assertThat(policies.get(1).keepLastN()).isZero();
+
+    for (String invalid :
+        List.of(
+            "",
+            "{}",
+            "[]",
+            "[1]",
+            "[{\"keep-last-n\": 1}]",
+            "[{\"tag-filter\": \"v.*\"}]",
+            "[{\"tag-filter\": \"v.*\", \"keep-last-n\": \"two\"}]",
+            "[{\"tag-filter\": ")) {
+      assertThatThrownBy(() -> Policy.parse(invalid))
+          .as(invalid)
+          .isInstanceOf(IllegalArgumentException.class);
+    }
+  }
+
+  @Test
+  void policiesShouldShareOneListing() {
+    AtomicInteger listings = new AtomicInteger();
+    Set<Long> deleted = ConcurrentHashMap.newKeySet();
+    ReleaseAccess access =
+        new StubReleaseAccess() {
+          @Override
+          public void list(Consumer<Release> consumer) {
+            listings.incrementAndGet();
+            IntStream.rangeClosed(1, 6)
+                .mapToObj(
+                    i ->
+                        new Release(
+                            i,
+                            null,
+                            rDate(i, "2021-01-0" + i).publication(),
+                            (i % 2 == 0 ? "v2." : "v1.") + i,
+                            i <= 3 ? "old" : "new"))
+                .forEach(consumer);
+          }
+
+          @Override
+          public void delete(Release release) {
+            deleted.add(release.id());
+          }
+        };
+    Params params =
+        new Params(
+            List.of(
+                // v1.1, v1.3, v1.5: keeps v1.5
+                new Policy("^v1\\..*", null, 1),
+                // v2.2, v2.4, v2.6: keeps v2.4, v2.6
+                new Policy("^v2\\..*", null, 2),
+                // 4, 5, 6: keeps none, but the previous policies keep them
+                new Policy(null, "new", 0)),
+            1,
+            Consistency.NONE);
+
+    RepositoryResult result = process(new Input(params, new Source("o", "r", "t")), access);
+
+    assertThat(listings).hasValue(1);
+    assertThat(deleted).containsExactlyInAnyOrder(1L, 2L, 3L);
+    assertThat(result.deleted()).isEqualTo(3);
+  }
+
+  static class StubReleaseAccess implements ReleaseAccess {
+
+    @Override
+    public void list(Consumer<Release> consumer) {}
+
+    @Override
+    public void delete(Release release) {}
+
+    @Override
+    public void deleteTag(Release release) {}
+
+    @Override
+    public void waitForDeletion(Release release) {}
+
+    @Override
+    public Set<String> tags() {
+      return Collections.emptySet();
+    }
+  }
+
   private static List<Release> filterByTag(List<Release> releases, String regex) {
     return DeleteReleaseAction.filter(releases, tagPredicate(regex));
   }
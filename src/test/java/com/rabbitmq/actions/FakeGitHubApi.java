@@ -0,0 +1,368 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * In-memory stand-in for the GitHub releases and git refs REST API, to run the action offline.
+ *
+ * <p>It lists releases newest first with <code>Link</code> headers, compressed if the client
+ * accepts gzip, finds releases by tag and tag refs by prefix, deletes releases and tag refs, and
+ * can add latency, errors and rate limit headers to the responses. It is used in tests and, started
+ * with {@link #main(String[])}, for the training run of the class data sharing archive in a build
+ * stage of the Docker image.
+ */
+class FakeGitHubApi implements AutoCloseable {
+
+  private static final Pattern RELEASES =
+      Pattern.compile("/repos/([^/]+/[^/]+)/releases(?:/([0-9]+))?");
+  private static final Pattern TAG_REF = Pattern.compile("/repos/([^/]+/[^/]+)/git/refs/tags/(.+)");
+  private static final Pattern RELEASE_BY_TAG =
+      Pattern.compile("/repos/([^/]+/[^/]+)/releases/tags/(.+)");
+  private static final Pattern MATCHING_TAG_REFS =
+      Pattern.compile("/repos/([^/]+/[^/]+)/git/matching-refs/tags(?:/(.*))?");
+  private static final long FIRST_PUBLICATION = 1_600_000_000L;
+
+  private final HttpServer server;
+  // repository to its releases, ordered by ID, newest last
+  private final Map<String, NavigableMap<Long, FakeRelease>> releases = new ConcurrentHashMap<>();
+  private final Map<String, Set<String>> tags = new ConcurrentHashMap<>();
+  private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+  private final AtomicLong requestCount = new AtomicLong();
+  private volatile Duration latency = Duration.ZERO;
+  private volatile int errorEvery = 0;
+  private volatile int errorStatus = 500;
+  private volatile int rateLimit = -1;
+  private final AtomicInteger rateLimitRemaining = new AtomicInteger();
+  private volatile long rateLimitReset;
+
+  FakeGitHubApi() throws IOException {
+    this(0);
+  }
+
+  /**
+   * @param port the port to listen on, 0 for any free port
+   */
+  FakeGitHubApi(int port) throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+    server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    server.createContext("/", this::handle);
+    server.start();
+  }
+
+  /**
+   * Serves releases until the process is stopped, the URL of the API is printed once it is ready.
+   *
+   * <p>Arguments: the port, the repository, and the number of releases.
+   */
+  public static void main(String[] args) throws IOException {
+    FakeGitHubApi api =
+        new FakeGitHubApi(Integer.parseInt(args[0])).releases(args[1], Integer.parseInt(args[2]));
+    System.out.println(api.url());
+  }
+
+  String url() {
+    return "http://localhost:" + server.getAddress().getPort();
+  }
+
+  /**
+   * Adds releases with the IDs 1 to count, published a minute apart, the tag and the name are
+   * <code>v1.0.0-SNAPSHOT-{id}</code>.
+   */
+  FakeGitHubApi releases(String repository, int count) {
+    for (long id = 1; id <= count; id++) {
+      release(repository, id, "v1.0.0-SNAPSHOT-" + id);
+    }
+    return this;
+  }
+
+  FakeGitHubApi release(String repository, long id, String tag) {
+    releases
+        .computeIfAbsent(repository, r -> new ConcurrentSkipListMap<>())
+        .put(id, new FakeRelease(id, tag, FIRST_PUBLICATION + id * 60));
+    tags.computeIfAbsent(repository, r -> ConcurrentHashMap.newKeySet()).add(tag);
+    return this;
+  }
+
+  /** Delay before each response. */
+  FakeGitHubApi latency(Duration latency) {
+    this.latency = latency;
+    return this;
+  }
+
+  /**
+   * Answers every n-th request with the status code instead of handling it, 0 to disable. 429
+   * responses have a <code>Retry-After</code> header of 0.
+   */
+  FakeGitHubApi errors(int every, int status) {
+    this.errorEvery = every;
+    this.errorStatus = status;
+    return this;
+  }
+
+  /**
+   * Sends rate limit headers with a budget of the limit for the next hour, then answers 403 once
+   * the budget is exhausted. -1 to disable.
+   */
+  FakeGitHubApi rateLimit(int limit) {
+    this.rateLimit = limit;
+    this.rateLimitRemaining.set(limit);
+    this.rateLimitReset = Instant.now().plus(Duration.ofHours(1)).getEpochSecond();
+    return this;
+  }
+
+  long requestCount() {
+    return requestCount.get();
+  }
+
+  /**
+   * @return the number of requests for the method, e.g. DELETE
+   */
+  int requestCount(String method) {
+    AtomicInteger count = requests.get(method);
+    return count == null ? 0 : count.get();
+  }
+
+  List<Long> releaseIds(String repository) {
+    return new ArrayList<>(
+        releases.getOrDefault(repository, Collections.emptyNavigableMap()).keySet());
+  }
+
+  Set<String> tags(String repository) {
+    return Set.copyOf(tags.getOrDefault(repository, Set.of()));
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      long count = requestCount.incrementAndGet();
+      requests
+          .computeIfAbsent(exchange.getRequestMethod(), m -> new AtomicInteger())
+          .incrementAndGet();
+      if (!latency.isZero()) {
+        Thread.sleep(latency.toMillis());
+      }
+      if (rateLimit >= 0) {
+        int remaining = Math.max(0, rateLimitRemaining.decrementAndGet());
+        exchange.getResponseHeaders().set("X-RateLimit-Limit", String.valueOf(rateLimit));
+        exchange.getResponseHeaders().set("X-RateLimit-Remaining", String.valueOf(remaining));
+        exchange.getResponseHeaders().set("X-RateLimit-Reset", String.valueOf(rateLimitReset));
+        if (remaining == 0) {
+          respond(exchange, 403, "{\"message\": \"API rate limit exceeded\"}");
+          return;
+        }
+      }
+      if (errorEvery > 0 && count % errorEvery == 0) {
+        if (errorStatus == 429) {
+          exchange.getResponseHeaders().set("Retry-After", "0");
+        }
+        respond(exchange, errorStatus, "{\"message\": \"Injected error\"}");
+        return;
+      }
+      String path = exchange.getRequestURI().getPath();
+      String method = exchange.getRequestMethod();
+      Matcher matcher;
+      if ((matcher = RELEASE_BY_TAG.matcher(path)).matches() && "GET".equals(method)) {
+        String tag = matcher.group(2);
+        FakeRelease release =
+            releases
+                .getOrDefault(matcher.group(1), Collections.emptyNavigableMap())
+                .values()
+                .stream()
+                .filter(r -> r.tag.equals(tag))
+                .findFirst()
+                .orElse(null);
+        if (release == null) {
+          respond(exchange, 404, "{\"message\": \"Not Found\"}");
+        } else {
+          String releasePath = path.substring(0, path.indexOf("/tags/")) + "/" + release.id;
+          respond(exchange, 200, release.json(releasePath, url()));
+        }
+      } else if ((matcher = RELEASES.matcher(path)).matches()) {
+        NavigableMap<Long, FakeRelease> repositoryReleases =
+            releases.getOrDefault(matcher.group(1), Collections.emptyNavigableMap());
+        if (matcher.group(2) == null && "GET".equals(method)) {
+          listReleases(exchange, repositoryReleases);
+        } else if (matcher.group(2) != null) {
+          long id = Long.parseLong(matcher.group(2));
+          FakeRelease release = repositoryReleases.get(id);
+          if (release == null) {
+            respond(exchange, 404, "{\"message\": \"Not Found\"}");
+          } else if ("DELETE".equals(method)) {
+            repositoryReleases.remove(id);
+            respond(exchange, 204, null);
+          } else {
+            respond(exchange, 200, release.json(exchange.getRequestURI().getPath(), url()));
+          }
+        } else {
+          respond(exchange, 404, "{\"message\": \"Not Found\"}");
+        }
+      } else if ((matcher = TAG_REF.matcher(path)).matches()) {
+        Set<String> repositoryTags = tags.getOrDefault(matcher.group(1), Set.of());
+        String tag = matcher.group(2);
+        if (!repositoryTags.contains(tag)) {
+          respond(exchange, "DELETE".equals(method) ? 422 : 404, "{\"message\": \"Not Found\"}");
+        } else if ("DELETE".equals(method)) {
+          repositoryTags.remove(tag);
+          respond(exchange, 204, null);
+        } else {
+          respond(exchange, 200, ref(tag));
+        }
+      } else if ((matcher = MATCHING_TAG_REFS.matcher(path)).matches()) {
+        String prefix = matcher.group(2) == null ? "" : matcher.group(2);
+        StringBuilder refs = new StringBuilder("[");
+        for (String tag : tags.getOrDefault(matcher.group(1), Set.of())) {
+          if (tag.startsWith(prefix)) {
+            refs.append(refs.length() == 1 ? "" : ",").append(ref(tag));
+          }
+        }
+        respond(exchange, 200, refs.append("]").toString());
+      } else {
+        respond(exchange, 404, "{\"message\": \"Not Found\"}");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void listReleases(HttpExchange exchange, NavigableMap<Long, FakeRelease> releases)
+      throws IOException {
+    String query = exchange.getRequestURI().getQuery();
+    int perPage = queryParameter(query, "per_page", 30);
+    int page = queryParameter(query, "page", 1);
+    // newest first, like GitHub
+    List<FakeRelease> all = new ArrayList<>(releases.descendingMap().values());
+    int lastPage = Math.max(1, (all.size() + perPage - 1) / perPage);
+    String base = url() + exchange.getRequestURI().getPath() + "?per_page=" + perPage + "&page=";
+    List<String> links = new ArrayList<>();
+    if (page < lastPage) {
+      links.add("<" + base + (page + 1) + ">; rel=\"next\"");
+      links.add("<" + base + lastPage + ">; rel=\"last\"");
+    }
+    if (page > 1) {
+      links.add("<" + base + (page - 1) + ">; rel=\"prev\"");
+      links.add("<" + base + 1 + ">; rel=\"first\"");
+    }
+    if (!links.isEmpty()) {
+      exchange.getResponseHeaders().set("Link", String.join(", ", links));
+    }
+    StringBuilder json = new StringBuilder("[");
+    String releasesPath = exchange.getRequestURI().getPath();
+    for (int i = (page - 1) * perPage; i < Math.min(all.size(), page * perPage); i++) {
+      json.append(json.length() == 1 ? "" : ",")
+          .append(all.get(i).json(releasesPath + "/" + all.get(i).id, url()));
+    }
+    String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+    if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+      try (OutputStream out = new GZIPOutputStream(compressed)) {
+        out.write(json.append("]").toString().getBytes(StandardCharsets.UTF_8));
+      }
+      exchange.getResponseHeaders().set("Content-Type", "application/json");
+      exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+      exchange.sendResponseHeaders(200, compressed.size());
+      try (OutputStream out = exchange.getResponseBody()) {
+        compressed.writeTo(out);
+      }
+    } else {
+      respond(exchange, 200, json.append("]").toString());
+    }
+  }
+
+  private static int queryParameter(String query, String name, int defaultValue) {
+    if (query != null) {
+      for (String parameter : query.split("&")) {
+        String[] nameValue = parameter.split("=", 2);
+        if (nameValue.length == 2 && name.equals(nameValue[0])) {
+          return Integer.parseInt(nameValue[1]);
+        }
+      }
+    }
+    return defaultValue;
+  }
+
+  private static String ref(String tag) {
+    return "{\"ref\": \"refs/tags/" + tag + "\", \"object\": {\"type\": \"commit\"}}";
+  }
+
+  private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+    if (body == null) {
+      exchange.sendResponseHeaders(status, -1);
+    } else {
+      byte[] content = body.getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "application/json");
+      exchange.sendResponseHeaders(status, content.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(content);
+      }
+    }
+  }
+
+  private static class FakeRelease {
+
+    private final long id;
+    private final String tag;
+    private final long publication;
+
+    private FakeRelease(long id, String tag, long publication) {
+      this.id = id;
+      this.tag = tag;
+      this.publication = publication;
+    }
+
+    /** The release with the usual fields, including the ones the action does not use. */
+    String json(String path, String apiUrl) {
+      String url = apiUrl + path;
+      return "{\"url\": \""
+          + url
+          + "\", \"assets_url\": \""
+          + url
+          + "/assets\", \"id\": "
+          + id
+          + ", \"author\": {\"login\": \"rabbitmq-ci\", \"id\": 71012429, \"type\": \"User\"}"
+          + ", \"tag_name\": \""
+          + tag
+          + "\", \"target_commitish\": \"main\", \"name\": \""
+          + tag
+          + "\", \"draft\": false, \"prerelease\": true, \"created_at\": \""
+          + Instant.ofEpochSecond(publication)
+          + "\", \"published_at\": \""
+          + Instant.ofEpochSecond(publication)
+          + "\", \"assets\": [{\"id\": "
+          + id
+          + ", \"name\": \""
+          + tag
+          + ".tar.gz\", \"size\": 21}], \"body\": \"\"}";
+    }
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static com.rabbitmq.actions.DeleteReleaseActionTest.rTag;
+import static com.rabbitmq.actions.GitubRestApiReleaseAccessTest.input;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.rabbitmq.actions.DeleteReleaseAction.GitubRestApiReleaseAccess;
+import com.rabbitmq.actions.DeleteReleaseAction.Release;
+import com.rabbitmq.actions.DeleteReleaseActionTest.StubReleaseAccess;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class GitPushReleaseAccessTest {
+
+  @TempDir Path root;
+
+  static String git(Path directory, String... arguments) throws Exception {
+    String[] command = new String[arguments.length + 1];
+    command[0] = "git";
+    System.arraycopy(arguments, 0, command, 1, arguments.length);
+    Process process =
+        new ProcessBuilder(command).directory(directory.toFile()).redirectErrorStream(true).start();
+    String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+    if (process.waitFor() != 0) {
+      throw new IllegalStateException(Arrays.toString(command) + " failed: " + output);
+    }
+    return output;
+  }
+
+  static boolean gitAvailable() {
+    try {
+      return new ProcessBuilder("git", "--version").start().waitFor() == 0;
+    } catch (Exception e) {
+      return false;
+    }
+  }
+
+  /** Runs git http-backend as a CGI script, to stand in for the GitHub git server. */
+  void httpBackend(HttpExchange exchange) throws IOException {
+    byte[] input = exchange.getRequestBody().readAllBytes();
+    ProcessBuilder builder = new ProcessBuilder("git", "http-backend");
+    Map<String, String> env = builder.environment();
+    env.put("GIT_PROJECT_ROOT", root.resolve("server").toString());
+    env.put("GIT_HTTP_EXPORT_ALL", "1");
+    // receive-pack is only enabled for authenticated users
+    env.put("REMOTE_USER", "x-access-token");
+    env.put("REQUEST_METHOD", exchange.getRequestMethod());
+    env.put("PATH_INFO", exchange.getRequestURI().getPath());
+    env.put(
+        "QUERY_STRING",
+        exchange.getRequestURI().getQuery() == null ? "" : exchange.getRequestURI().getQuery());
+    env.put("CONTENT_TYPE", String.valueOf(exchange.getRequestHeaders().getFirst("Content-Type")));
+    env.put("CONTENT_LENGTH", String.valueOf(input.length));
+    Process process = builder.start();
+    try (OutputStream stdin = process.getOutputStream()) {
+      stdin.write(input);
+    }
+    byte[] output = process.getInputStream().readAllBytes();
+    int headersEnd = 0;
+    int status = 200;
+    String cgi = new String(output, StandardCharsets.ISO_8859_1);
+    int separator = cgi.indexOf("\r\n\r\n");
+    if (separator >= 0) {
+      headersEnd = separator + 4;
+      for (String header : cgi.substring(0, separator).split("\r\n")) {
+        String[] nameValue = header.split(":", 2);
+        if ("Status".equalsIgnoreCase(nameValue[0])) {
+          status = Integer.parseInt(nameValue[1].trim().split(" ")[0]);
+        } else {
+          exchange.getResponseHeaders().add(nameValue[0], nameValue[1].trim());
+        }
+      }
+    }
+    byte[] body = Arrays.copyOfRange(output, headersEnd, output.length);
+    exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  @Test
+  void deleteTagsShouldDeleteAllTagsInOnePush() throws Exception {
+    assumeTrue(gitAvailable(), "git is not available");
+    Path server = Files.createDirectories(root.resolve("server").resolve("owner"));
+    git(server, "init", "--bare", "--quiet", "repo.git");
+    Path work = Files.createDirectories(root.resolve("work"));
+    git(work, "init", "--quiet");
+    git(
+        work,
+        "-c",
+        "user.name=test",
+        "-c",
+        "user.email=test@test",
+        "commit",
+        "--quiet",
+        "--allow-empty",
+        "-m",
+        "initial");
+    git(work, "tag", "t1");
+    git(work, "-c", "user.name=test", "-c", "user.email=test@test", "tag", "-a", "t2", "-m", "t2");
+    git(work, "tag", "t3");
+    git(work, "push", "--quiet", "--tags", server.resolve("repo.git").toString());
+
+    HttpServer httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    httpServer.createContext("/", this::httpBackend);
+    httpServer.start();
+    try {
+      RequestScheduler scheduler =
+          new RequestScheduler(GitubRestApiReleaseAccess.newHttpClient(), 0);
+      GitPushReleaseAccess access =
+          new GitPushReleaseAccess(
+              new StubReleaseAccess(),
+              input(),
+              "http://localhost:" + httpServer.getAddress().getPort(),
+              scheduler);
+      List<Release> releases = List.of(rTag(1, "t1"), rTag(2, "t2"), rTag(4, "already-gone"));
+
+      Map<Release, Exception> failures = access.deleteTags(releases);
+
+      assertThat(failures).isEmpty();
+      assertThat(git(server.resolve("repo.git"), "tag", "-l").trim()).isEqualTo("t3");
+    } finally {
+      httpServer.stop(0);
+    }
+  }
+
+  static String packetLine(String content) {
+    return String.format("%04x", content.length() + 4) + content;
+  }
+
+  @Test
+  void parseReport() throws Exception {
+    String report =
+        packetLine("unpack ok\n")
+            + packetLine("ok refs/tags/t1\n")
+            + packetLine("ng refs/tags/t2 atomic push failed\n")
+            + "0000";
+    assertThat(
+            GitPushReleaseAccess.parseReport(
+                new ByteArrayInputStream(report.getBytes(StandardCharsets.UTF_8))))
+        .containsEntry("refs/tags/t1", "ok")
+        .containsEntry("refs/tags/t2", "atomic push failed");
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static com.rabbitmq.actions.GitubRestApiReleaseAccessTest.input;
+import static com.rabbitmq.actions.GitubRestApiReleaseAccessTest.releasesJson;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.rabbitmq.actions.DeleteReleaseAction.GitubRestApiReleaseAccess;
+import com.rabbitmq.actions.DeleteReleaseAction.Release;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class GithubGraphQlReleaseAccessTest {
+
+  HttpServer server;
+  String apiUrl;
+  GithubGraphQlReleaseAccess access;
+  Queue<String> restRequests = new ConcurrentLinkedQueue<>();
+
+  static void respond(HttpExchange exchange, int code, String body) throws IOException {
+    byte[] content = body.getBytes(StandardCharsets.UTF_8);
+    exchange.sendResponseHeaders(code, content.length == 0 ? -1 : content.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(content);
+    }
+  }
+
+  static String node(long id, String refId) {
+    return "{\"databaseId\": "
+        + id
+        + ", \"tagName\": \"v"
+        + id
+        + "\", \"name\": \"release "
+        + id
+        + "\", \"publishedAt\": \"2021-03-01T10:37:58Z\", \"tag\": "
+        + (refId == null ? "null" : "{\"id\": \"" + refId + "\"}")
+        + "}";
+  }
+
+  @BeforeEach
+  void init() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.start();
+    apiUrl = "http://localhost:" + server.getAddress().getPort();
+    server.createContext(
+        "/repos/owner/repo",
+        exchange -> {
+          restRequests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath());
+          if ("GET".equals(exchange.getRequestMethod())) {
+            respond(exchange, 200, releasesJson(List.of(10L, 11L)));
+          } else {
+            respond(exchange, 204, "");
+          }
+        });
+    access =
+        new GithubGraphQlReleaseAccess(
+            input(), apiUrl + "/graphql", new GitubRestApiReleaseAccess(input(), apiUrl));
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  void listShouldFollowCursorsAndProjectFields() {
+    server.createContext(
+        "/graphql",
+        exchange -> {
+          JsonObject request =
+              JsonParser.parseString(
+                      new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8))
+                  .getAsJsonObject();
+          assertThat(request.get("query").getAsString()).contains("databaseId", "first: 100");
+          if (!request.getAsJsonObject("variables").has("cursor")) {
+            respond(
+                exchange,
+                200,
+                "{\"data\": {\"repository\": {\"releases\": {"
+                    + "\"pageInfo\": {\"hasNextPage\": true, \"endCursor\": \"c1\"}, "
+                    + "\"nodes\": ["
+                    + node(3, "ref-3")
+                    + ", "
+                    + node(2, "ref-2")
+                    + "]}}}}");
+          } else {
+            respond(
+                exchange,
+                200,
+                "{\"data\": {\"repository\": {\"releases\": {"
+                    + "\"pageInfo\": {\"hasNextPage\": false, \"endCursor\": null}, "
+                    + "\"nodes\": ["
+                    + node(1, null)
+                    + "]}}}}");
+          }
+        });
+
+    List<Release> releases = access.list();
+
+    assertThat(releases.stream().mapToLong(Release::id)).containsExactly(3L, 2L, 1L);
+    assertThat(releases.get(0).url()).isEqualTo(apiUrl + "/repos/owner/repo/releases/3");
+    assertThat(releases.get(0).tag()).isEqualTo("v3");
+    assertThat(releases.get(0).name()).isEqualTo("release 3");
+    assertThat(releases.get(0).publication()).isNotNull();
+    assertThat(restRequests).isEmpty();
+  }
+
+  @Test
+  void listShouldFallBackToRestOnGraphQlErrors() {
+    server.createContext(
+        "/graphql",
+        exchange -> respond(exchange, 200, "{\"errors\": [{\"message\": \"not available\"}]}"));
+
+    assertThat(access.list().stream().mapToLong(Release::id)).containsExactly(10L, 11L);
+  }
+
+  @Test
+  void deleteTagsShouldBatchAliasedMutations() {
+    int count = GithubGraphQlReleaseAccess.TAG_DELETION_BATCH_SIZE + 5;
+    AtomicInteger mutations = new AtomicInteger();
+    server.createContext(
+        "/graphql",
+        exchange -> {
+          JsonObject request =
+              JsonParser.parseString(
+                      new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8))
+                  .getAsJsonObject();
+          String query = request.get("query").getAsString();
+          if (query.startsWith("query")) {
+            String nodes =
+                IntStream.range(0, count)
+                    .mapToObj(i -> node(i, "ref-" + i))
+                    .collect(Collectors.joining(", "));
+            respond(
+                exchange,
+                200,
+                "{\"data\": {\"repository\": {\"releases\": {"
+                    + "\"pageInfo\": {\"hasNextPage\": false, \"endCursor\": null}, "
+                    + "\"nodes\": ["
+                    + nodes
+                    + ", "
+                    + node(100, null)
+                    + "]}}}}");
+          } else {
+            mutations.incrementAndGet();
+            JsonObject variables = request.getAsJsonObject("variables");
+            StringBuilder data = new StringBuilder();
+            List<String> errors = new ArrayList<>();
+            for (Map.Entry<String, ?> variable : variables.entrySet()) {
+              String alias = "t" + variable.getKey().substring(1);
+              assertThat(query)
+                  .contains(alias + ": deleteRef(input: {refId: $" + variable.getKey());
+              boolean fail = "\"ref-2\"".equals(variable.getValue().toString());
+              data.append(data.length() == 0 ? "" : ", ")
+                  .append("\"")
+                  .append(alias)
+                  .append("\": ")
+                  .append(fail ? "null" : "{\"clientMutationId\": null}");
+              if (fail) {
+                errors.add("{\"message\": \"Could not delete\", \"path\": [\"" + alias + "\"]}");
+              }
+            }
+            respond(
+                exchange,
+                200,
+                "{\"data\": {" + data + "}, \"errors\": [" + String.join(", ", errors) + "]}");
+          }
+        });
+
+    List<Release> releases = access.list();
+    Map<Release, Exception> failures = access.deleteTags(releases);
+
+    assertThat(mutations).hasValue(2);
+    assertThat(failures.keySet().stream().mapToLong(Release::id)).containsExactly(2L);
+    assertThat(failures.values().iterator().next()).hasMessage("Could not delete");
+    // no tag node ID for this one, so it goes through the REST API
+    assertThat(restRequests).containsExactly("DELETE /repos/owner/repo/git/refs/tags/v100");
+  }
+}
@@ -0,0 +1,440 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static com.rabbitmq.actions.DeleteReleaseAction.GitubRestApiReleaseAccess.lastLink;
+import static com.rabbitmq.actions.DeleteReleaseAction.GitubRestApiReleaseAccess.nextLink;
+import static com.rabbitmq.actions.DeleteReleaseAction.GitubRestApiReleaseAccess.pageLink;
+import static com.rabbitmq.actions.DeleteReleaseAction.GitubRestApiReleaseAccess.pageNumber;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.rabbitmq.actions.DeleteReleaseAction.Consistency;
+import com.rabbitmq.actions.DeleteReleaseAction.GitubRestApiReleaseAccess;
+import com.rabbitmq.actions.DeleteReleaseAction.Input;
+import com.rabbitmq.actions.DeleteReleaseAction.Params;
+import com.rabbitmq.actions.DeleteReleaseAction.Release;
+import com.rabbitmq.actions.DeleteReleaseAction.Source;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class GitubRestApiReleaseAccessTest {
+
+  static final String LINK =
+      "<https://api.github.com/repositories/343344332/releases?per_page=100&page=2>; rel=\"next\", "
+          + "<https://api.github.com/repositories/343344332/releases?per_page=100&page=7>; rel=\"last\"";
+
+  HttpServer server;
+  String apiUrl;
+
+  static Input input() {
+    return new Input(
+        new Params("v.*", null, 1, 1, Consistency.STRICT), new Source("owner", "repo", "token"));
+  }
+
+  static String releasesJson(List<Long> ids) {
+    return ids.stream()
+        .map(
+            id ->
+                "{\"id\": "
+                    + id
+                    + ", \"tag_name\": \"v"
+                    + id
+                    + "\", \"name\": \"v"
+                    + id
+                    + "\", \"published_at\": \"2021-03-01T10:37:58Z\"}")
+        .collect(Collectors.joining(", ", "[", "]"));
+  }
+
+  @BeforeEach
+  void init() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    server.start();
+    apiUrl = "http://localhost:" + server.getAddress().getPort();
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  void links() {
+    assertThat(nextLink(LINK))
+        .isEqualTo("https://api.github.com/repositories/343344332/releases?per_page=100&page=2");
+    assertThat(lastLink(LINK))
+        .isEqualTo("https://api.github.com/repositories/343344332/releases?per_page=100&page=7");
+    assertThat(lastLink("<https://api.github.com/releases?page=1>; rel=\"prev\"")).isNull();
+    assertThat(pageNumber(lastLink(LINK))).isEqualTo(7);
+    assertThat(pageLink(lastLink(LINK), 3))
+        .isEqualTo("https://api.github.com/repositories/343344332/releases?per_page=100&page=3");
+  }
+
+  @Test
+  void listShouldPrefetchPagesAndKeepOrder() {
+    int pageCount = 9;
+    int pageSize = 3;
+    AtomicInteger requests = new AtomicInteger();
+    Pattern pagePattern = Pattern.compile("[?&]page=([0-9]+)");
+    server.createContext(
+        "/repos/owner/repo/releases",
+        exchange -> {
+          requests.incrementAndGet();
+          Matcher matcher = pagePattern.matcher(exchange.getRequestURI().getQuery());
+          int page = matcher.find() ? Integer.parseInt(matcher.group(1)) : 1;
+          String url = apiUrl + "/repos/owner/repo/releases?per_page=" + pageSize + "&page=";
+          String link = "";
+          if (page < pageCount) {
+            link = "<" + url + (page + 1) + ">; rel=\"next\", ";
+          }
+          link += "<" + url + pageCount + ">; rel=\"last\"";
+          exchange.getResponseHeaders().add("link", link);
+          try {
+            // later pages answer faster, so they complete out of order
+            Thread.sleep((pageCount - page) * 10L);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          List<Long> ids =
+              IntStream.range(0, pageSize)
+                  .mapToObj(i -> (long) (page - 1) * pageSize + i)
+                  .collect(Collectors.toList());
+          byte[] body = releasesJson(ids).getBytes(StandardCharsets.UTF_8);
+          exchange.sendResponseHeaders(200, body.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+          }
+        });
+
+    List<Release> releases = new ArrayList<>();
+    new GitubRestApiReleaseAccess(input(), apiUrl).list(releases::add);
+
+    assertThat(requests).hasValue(pageCount);
+    assertThat(releases.stream().mapToLong(Release::id))
+        .containsExactlyElementsOf(
+            IntStream.range(0, pageCount * pageSize).mapToObj(i -> (long) i).toList());
+  }
+
+  @Test
+  void listShouldSendConditionalRequestsWithCache(@TempDir Path cacheDirectory) throws Exception {
+    Queue<String> ifNoneMatch = new ConcurrentLinkedQueue<>();
+    server.createContext(
+        "/repos/owner/repo/releases",
+        exchange -> {
+          String etag = exchange.getRequestHeaders().getFirst("If-None-Match");
+          ifNoneMatch.add(String.valueOf(etag));
+          if ("\"v1\"".equals(etag)) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+          } else {
+            exchange.getResponseHeaders().add("etag", "\"v1\"");
+            byte[] body = releasesJson(List.of(1L, 2L, 3L)).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+              out.write(body);
+            }
+          }
+        });
+    RequestScheduler scheduler = new RequestScheduler(GitubRestApiReleaseAccess.newHttpClient(), 0);
+
+    for (int i = 0; i < 2; i++) {
+      GitubRestApiReleaseAccess access =
+          new GitubRestApiReleaseAccess(input(), apiUrl, scheduler, new PageCache(cacheDirectory));
+      assertThat(access.list().stream().mapToLong(Release::id)).containsExactly(1L, 2L, 3L);
+    }
+
+    assertThat(ifNoneMatch).containsExactly("null", "\"v1\"");
+  }
+
+  @Test
+  void listShouldAskAndDecompressGzip(@TempDir Path cacheDirectory) throws Exception {
+    Queue<String> acceptEncoding = new ConcurrentLinkedQueue<>();
+    server.createContext(
+        "/repos/owner/repo/releases",
+        exchange -> {
+          acceptEncoding.add(
+              String.valueOf(exchange.getRequestHeaders().getFirst("Accept-Encoding")));
+          if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+          }
+          ByteArrayOutputStream body = new ByteArrayOutputStream();
+          try (OutputStream out = new GZIPOutputStream(body)) {
+            out.write(releasesJson(List.of(1L, 2L, 3L)).getBytes(StandardCharsets.UTF_8));
+          }
+          exchange.getResponseHeaders().add("etag", "\"v1\"");
+          exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+          exchange.sendResponseHeaders(200, body.size());
+          try (OutputStream out = exchange.getResponseBody()) {
+            body.writeTo(out);
+          }
+        });
+    RequestScheduler scheduler = new RequestScheduler(GitubRestApiReleaseAccess.newHttpClient(), 0);
+
+    assertThat(
+            new GitubRestApiReleaseAccess(input(), apiUrl, scheduler)
+                .list().stream().mapToLong(Release::id))
+        .containsExactly(1L, 2L, 3L);
+    // the page is cached compressed, then read from the cache after a 304
+    for (int i = 0; i < 2; i++) {
+      GitubRestApiReleaseAccess access =
+          new GitubRestApiReleaseAccess(input(), apiUrl, scheduler, new PageCache(cacheDirectory));
+      access.list();
+      assertThat(access.list().stream().mapToLong(Release::id)).containsExactly(1L, 2L, 3L);
+    }
+    assertThat(acceptEncoding).hasSize(5).containsOnly("gzip");
+  }
+
+  @Test
+  void listShouldOnlyFetchNewReleasesWithIndex(@TempDir Path cacheDirectory) throws Exception {
+    try (FakeGitHubApi api = new FakeGitHubApi().releases("owner/repo", 250)) {
+      RequestScheduler scheduler =
+          new RequestScheduler(GitubRestApiReleaseAccess.newHttpClient(), 0);
+      Supplier<GitubRestApiReleaseAccess> access =
+          () -> {
+            try {
+              return new GitubRestApiReleaseAccess(
+                  input(), api.url(), scheduler, new PageCache(cacheDirectory));
+            } catch (Exception e) {
+              throw new RuntimeException(e);
+            }
+          };
+      List<Long> newestFirst =
+          LongStream.iterate(250, id -> id >= 1, id -> id - 1).boxed().toList();
+
+      long requests = api.requestCount();
+      assertThat(access.get().list().stream().map(Release::id))
+          .containsExactlyElementsOf(newestFirst);
+      assertThat(api.requestCount() - requests).isEqualTo(3);
+
+      api.release("owner/repo", 251, "v251").release("owner/repo", 252, "v252");
+      GitubRestApiReleaseAccess incremental = access.get();
+      requests = api.requestCount();
+      List<Release> releases = incremental.list();
+      // the first page and the last page, for the number of releases
+      assertThat(api.requestCount() - requests).isEqualTo(2);
+      assertThat(releases.stream().map(Release::id)).startsWith(252L, 251L, 250L).hasSize(252);
+      assertThat(releases.get(releases.size() - 1).url())
+          .isEqualTo(api.url() + "/repos/owner/repo/releases/1");
+      assertThat(releases.get(releases.size() - 1).tag()).isEqualTo("v1.0.0-SNAPSHOT-1");
+
+      // deleted by this access and by someone else
+      incremental.delete(releases.get(releases.size() - 1));
+      new GitubRestApiReleaseAccess(input(), api.url(), scheduler).delete(releases.get(1));
+      requests = api.requestCount();
+      assertThat(access.get().list().stream().map(Release::id))
+          .startsWith(252L, 250L)
+          .doesNotContain(251L, 1L)
+          .hasSize(250);
+      assertThat(api.requestCount() - requests).isEqualTo(2);
+
+      // deleted elsewhere, beyond the first page, the index does not know it
+      new GitubRestApiReleaseAccess(input(), api.url(), scheduler)
+          .delete(new Release(10, api.url() + "/repos/owner/repo/releases/10", null, null, null));
+      requests = api.requestCount();
+      assertThat(access.get().list().stream().map(Release::id))
+          .startsWith(252L, 250L)
+          .doesNotContain(251L, 10L, 1L)
+          .hasSize(249);
+      // the other pages are listed
+      assertThat(api.requestCount() - requests).isEqualTo(4);
+      requests = api.requestCount();
+      assertThat(access.get().list()).hasSize(249);
+      assertThat(api.requestCount() - requests).isEqualTo(2);
+    }
+  }
+
+  @Test
+  void listWithTagPrefixesShouldFetchReleasesOfMatchingTags() {
+    Queue<String> requests = new ConcurrentLinkedQueue<>();
+    server.createContext(
+        "/repos/owner/repo/git/matching-refs/tags",
+        exchange -> {
+          requests.add(exchange.getRequestURI().getPath());
+          String prefix =
+              exchange
+                  .getRequestURI()
+                  .getPath()
+                  .substring("/repos/owner/repo/git/matching-refs/tags/".length());
+          String refs =
+              Stream.of("v1", "v2", "v3", "other1")
+                  .filter(t -> t.startsWith(prefix))
+                  .map(t -> "{\"ref\": \"refs/tags/" + t + "\"}")
+                  .collect(Collectors.joining(", ", "[", "]"));
+          byte[] body = refs.getBytes(StandardCharsets.UTF_8);
+          exchange.sendResponseHeaders(200, body.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+          }
+        });
+    server.createContext(
+        "/repos/owner/repo/releases",
+        exchange -> {
+          requests.add(exchange.getRequestURI().getPath());
+          String path = exchange.getRequestURI().getPath();
+          if (path.equals("/repos/owner/repo/releases")) {
+            // drafts first
+            String page =
+                "[{\"id\": 5, \"tag_name\": \"v5\", \"published_at\": null}, "
+                    + "{\"id\": 6, \"tag_name\": \"other6\", \"published_at\": null}, "
+                    + releasesJson(List.of(3L)).substring(1);
+            byte[] body = page.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+              out.write(body);
+            }
+            return;
+          }
+          if (!path.startsWith("/repos/owner/repo/releases/tags/v") || path.endsWith("v2")) {
+            // a tag without release
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+          }
+          long id = Long.parseLong(path.substring(path.lastIndexOf('v') + 1));
+          String release = releasesJson(List.of(id));
+          byte[] body = release.substring(1, release.length() - 1).getBytes(StandardCharsets.UTF_8);
+          exchange.sendResponseHeaders(200, body.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+          }
+        });
+
+    List<Release> releases = new ArrayList<>();
+    boolean restricted =
+        new GitubRestApiReleaseAccess(input(), apiUrl).list(List.of("v"), releases::add);
+
+    assertThat(restricted).isTrue();
+    // the draft has no tag yet
+    assertThat(releases.stream().map(Release::tag)).containsExactly("v5", "v1", "v3");
+    assertThat(requests)
+        .containsExactlyInAnyOrder(
+            "/repos/owner/repo/git/matching-refs/tags/v",
+            "/repos/owner/repo/releases",
+            "/repos/owner/repo/releases/tags/v1",
+            "/repos/owner/repo/releases/tags/v2",
+            "/repos/owner/repo/releases/tags/v3");
+  }
+
+  @Test
+  void listWithTagPrefixesShouldListAllReleasesIfDraftsAreNotFirst() {
+    server.createContext(
+        "/repos/owner/repo/git/matching-refs/tags",
+        exchange -> {
+          byte[] body = "[{\"ref\": \"refs/tags/v1\"}]".getBytes(StandardCharsets.UTF_8);
+          exchange.sendResponseHeaders(200, body.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+          }
+        });
+    AtomicInteger listings = new AtomicInteger();
+    server.createContext(
+        "/repos/owner/repo/releases",
+        exchange -> {
+          listings.incrementAndGet();
+          String page =
+              releasesJson(List.of(1L)).replace("]", ", ")
+                  + "{\"id\": 2, \"tag_name\": \"v2\", \"published_at\": null}]";
+          byte[] body = page.getBytes(StandardCharsets.UTF_8);
+          exchange.sendResponseHeaders(200, body.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+          }
+        });
+
+    List<Release> releases = new ArrayList<>();
+    boolean restricted =
+        new GitubRestApiReleaseAccess(input(), apiUrl).list(List.of("v"), releases::add);
+
+    assertThat(restricted).isFalse();
+    assertThat(listings).hasValue(2);
+    assertThat(releases.stream().mapToLong(Release::id)).containsExactly(1L, 2L);
+  }
+
+  @Test
+  void listWithTagPrefixesShouldListAllReleasesIfTooManyTagsMatch() {
+    server.createContext(
+        "/repos/owner/repo/git/matching-refs/tags",
+        exchange -> {
+          byte[] body =
+              IntStream.range(0, 101)
+                  .mapToObj(i -> "{\"ref\": \"refs/tags/v" + i + "\"}")
+                  .collect(Collectors.joining(", ", "[", "]"))
+                  .getBytes(StandardCharsets.UTF_8);
+          exchange.sendResponseHeaders(200, body.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+          }
+        });
+    AtomicInteger listings = new AtomicInteger();
+    server.createContext(
+        "/repos/owner/repo/releases",
+        exchange -> {
+          listings.incrementAndGet();
+          byte[] body = releasesJson(List.of(1L, 2L)).getBytes(StandardCharsets.UTF_8);
+          exchange.sendResponseHeaders(200, body.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+          }
+        });
+
+    List<Release> releases = new ArrayList<>();
+    new GitubRestApiReleaseAccess(input(), apiUrl).list(List.of("v"), releases::add);
+
+    assertThat(listings).hasValue(1);
+    assertThat(releases.stream().mapToLong(Release::id)).containsExactly(1L, 2L);
+  }
+
+  @Test
+  void resolveRepositoriesShouldExpandGlobs() {
+    server.createContext(
+        "/orgs/someone/repos",
+        exchange -> {
+          exchange.sendResponseHeaders(404, -1);
+          exchange.close();
+        });
+    server.createContext(
+        "/users/someone/repos",
+        exchange -> {
+          byte[] body =
+              "[{\"name\": \"b-binaries-dev\"}, {\"name\": \"a-binaries-dev\"}, {\"name\": \"c\"}]"
+                  .getBytes(StandardCharsets.UTF_8);
+          exchange.sendResponseHeaders(200, body.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+          }
+        });
+    RequestScheduler scheduler = new RequestScheduler(GitubRestApiReleaseAccess.newHttpClient(), 0);
+
+    assertThat(
+            DeleteReleaseAction.resolveRepositories(
+                List.of("someone/*-binaries-dev", "other/repo"), scheduler, apiUrl, "token"))
+        .containsExactly("someone/a-binaries-dev", "someone/b-binaries-dev", "other/repo");
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MetricsTest {
+
+  @TempDir Path directory;
+
+  static HttpRequest request(String method, String path) {
+    return HttpRequest.newBuilder(URI.create("https://api.github.com" + path))
+        .method(method, HttpRequest.BodyPublishers.noBody())
+        .build();
+  }
+
+  @Test
+  void callType() {
+    assertThat(Metrics.callType(request("GET", "/repos/o/r/releases")))
+        .isEqualTo("release listing");
+    assertThat(Metrics.callType(request("DELETE", "/repos/o/r/releases/42")))
+        .isEqualTo("release deletion");
+    assertThat(Metrics.callType(request("GET", "/repos/o/r/releases/42")))
+        .isEqualTo("release check");
+    assertThat(Metrics.callType(request("DELETE", "/repos/o/r/git/refs/tags/v1")))
+        .isEqualTo("tag deletion");
+    assertThat(Metrics.callType(request("GET", "/repos/o/r/git/matching-refs/tags")))
+        .isEqualTo("tag listing");
+    assertThat(Metrics.callType(request("GET", "/repos/o/r/releases/tags/v1")))
+        .isEqualTo("release lookup");
+    assertThat(Metrics.callType(request("POST", "/graphql"))).isEqualTo("graphql");
+  }
+
+  @Test
+  void percentile() {
+    long[] values = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+    assertThat(Metrics.percentile(values, 50)).isEqualTo(5);
+    assertThat(Metrics.percentile(values, 90)).isEqualTo(9);
+    assertThat(Metrics.percentile(values, 99)).isEqualTo(10);
+    assertThat(Metrics.percentile(new long[] {7}, 50)).isEqualTo(7);
+  }
+
+  @Test
+  void reportShouldAppendSummaryAndOutputs() throws Exception {
+    Path summary = directory.resolve("summary.md");
+    Path output = directory.resolve("output");
+    Files.writeString(output, "previous=value\n");
+    Metrics metrics = new Metrics();
+    metrics.request(request("GET", "/repos/o/r/releases"), 20_000_000);
+    metrics.request(request("DELETE", "/repos/o/r/releases/1"), 5_000_000);
+    metrics.retry();
+    metrics.phase(Metrics.LISTING, 20_000_000);
+
+    metrics.report(
+        Map.of("GITHUB_STEP_SUMMARY", summary.toString(), "GITHUB_OUTPUT", output.toString()),
+        1,
+        0,
+        0);
+
+    assertThat(Files.readString(summary))
+        .contains("| listing | 20 ms |")
+        .contains("| release deletion | 1 | 5 ms | 5 ms | 5 ms | 5 ms |")
+        .contains("| release listing | 1 | 20 ms |");
+    assertThat(Files.readAllLines(output))
+        .startsWith("previous=value", "deleted-count=1", "failed-count=0", "remaining-count=0")
+        .contains("request-count=2", "retry-count=1")
+        .anyMatch(l -> l.startsWith("duration-ms="));
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.rabbitmq.actions.PatternFilter.CompiledPattern;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+public class PatternFilterTest {
+
+  static final String STREAM_PERF_TEST =
+      "^v-stream-perf-test-0.[0-9]+.0-SNAPSHOT-[0-9]{8}-[0-9]{6}$";
+
+  @Test
+  void prefixAndMinLength() {
+    CompiledPattern pattern = new CompiledPattern(STREAM_PERF_TEST);
+    assertThat(pattern.prefix()).isEqualTo("v-stream-perf-test-0");
+    assertThat(pattern.minLength())
+        .isEqualTo("v-stream-perf-test-0.1.0-SNAPSHOT-20210301-103758".length());
+
+    assertThat(new CompiledPattern("v3\\.9\\.0-alpha\\.[0-9]+").prefix())
+        .isEqualTo("v3.9.0-alpha.");
+    assertThat(new CompiledPattern("abc*d").prefix()).isEqualTo("ab");
+    assertThat(new CompiledPattern("abc*d").minLength()).isEqualTo(3);
+    assertThat(new CompiledPattern("ab+c").prefix()).isEqualTo("ab");
+    assertThat(new CompiledPattern("ab?c").prefix()).isEqualTo("a");
+    assertThat(new CompiledPattern("a(b|c)d").prefix()).isEmpty();
+    assertThat(new CompiledPattern("(?i)abc").prefix()).isEmpty();
+    assertThat(new CompiledPattern("abc(?i)def").prefix()).isEqualTo("abc");
+    assertThat(new CompiledPattern("abc(?i)def").minLength()).isEqualTo(3);
+    assertThat(new CompiledPattern(".*").minLength()).isZero();
+    assertThat(new CompiledPattern("[]a]{2,}x").minLength()).isEqualTo(3);
+  }
+
+  @Test
+  void shouldMatchLikeTheRegularExpressions() {
+    List<String> regexes =
+        List.of(
+            STREAM_PERF_TEST,
+            "v3\\.9\\.0-alpha\\.[0-9]+",
+            "abc*d",
+            "ab+c",
+            "ab?c",
+            "a(b|c)d",
+            "(?i)abc",
+            "abc(?i)def",
+            "x{2,3}y",
+            "[^a]b\\d",
+            "a|b",
+            ".*-SNAPSHOT-.*");
+    List<String> values =
+        List.of(
+            "",
+            "a",
+            "abd",
+            "abcd",
+            "abccd",
+            "ad",
+            "ac",
+            "abc",
+            "ABC",
+            "abbc",
+            "abcDEF",
+            "abcdef",
+            "xxy",
+            "xxxy",
+            "xy",
+            "bb1",
+            "ab1",
+            "b",
+            "v3.9.0-alpha.4",
+            "v3.9.0-alpha.",
+            "v3x9.0-alpha.4",
+            "v-stream-perf-test-0.1.0-SNAPSHOT-20210301-103758",
+            "v-stream-perf-test-0.12.0-SNAPSHOT-20210301-103758",
+            "v-stream-perf-test-0.1.0-SNAPSHOT-2021030-103758",
+            "v-stream-perf-test-1.1.0-SNAPSHOT-20210301-103758");
+    for (String regex : regexes) {
+      PatternFilter filter = PatternFilter.compile(regex);
+      Pattern pattern = Pattern.compile(regex);
+      for (String value : values) {
+        assertThat(filter.test(value))
+            .as("%s matches %s", regex, value)
+            .isEqualTo(pattern.matcher(value).matches());
+      }
+    }
+  }
+
+  @Test
+  void severalPatterns() {
+    PatternFilter filter = PatternFilter.compile("^v1\\.[0-9]+$\n\n  ^v2\\.[0-9]+$  \n");
+    assertThat(filter.test("v1.0")).isTrue();
+    assertThat(filter.test("v2.3")).isTrue();
+    assertThat(filter.test("v3.0")).isFalse();
+    assertThat(filter.test(null)).isFalse();
+    assertThat(PatternFilter.lines("a\r\nb\n\n c ")).containsExactly("a", "b", "c");
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.rabbitmq.actions.DeleteReleaseAction.Release;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class PlanTest {
+
+  @TempDir Path directory;
+
+  static List<Release> releases(long from, long to) {
+    return LongStream.rangeClosed(from, to)
+        .mapToObj(
+            id ->
+                new Release(
+                    id,
+                    "https://api.github.com/repos/o/r/releases/" + id,
+                    1_614_595_078L + id,
+                    "v" + id,
+                    "release " + id))
+        .toList();
+  }
+
+  @Test
+  void writeAndRead() throws Exception {
+    Plan plan = new Plan();
+    plan.add("o/a", releases(1, 3));
+    plan.add("o/b", List.of());
+    Path file = directory.resolve("plans").resolve("plan.json");
+    plan.write(file);
+
+    Plan read = Plan.read(file);
+    assertThat(read.repositories()).containsExactly("o/a", "o/b");
+    assertThat(read.size()).isEqualTo(3);
+    assertThat(read.releases("o/a")).containsExactlyElementsOf(releases(1, 3));
+    Release release = read.releases("o/a").get(0);
+    assertThat(release.url()).isEqualTo("https://api.github.com/repos/o/r/releases/1");
+    assertThat(release.publicationEpoch()).isEqualTo(1_614_595_079L);
+    assertThat(release.tag()).isEqualTo("v1");
+    assertThat(release.name()).isEqualTo("release 1");
+    assertThat(read.releases("o/b")).isEmpty();
+    assertThat(read.releases("o/c")).isEmpty();
+
+    Files.writeString(file, "null");
+    assertThatThrownBy(() -> Plan.read(file)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shardsShouldBeDisjointAndCoverThePlan() {
+    Plan plan = new Plan();
+    plan.add("o/a", releases(1, 50));
+    plan.add("o/b", releases(1000, 1020));
+    List<Release> all = new ArrayList<>();
+    for (int i = 1; i <= 3; i++) {
+      Plan shard = plan.shard(i, 3);
+      assertThat(shard.repositories()).containsExactly("o/a", "o/b");
+      assertThat(shard.size()).isBetween(23, 24);
+      all.addAll(shard.releases("o/a"));
+      all.addAll(shard.releases("o/b"));
+    }
+    assertThat(all).doesNotHaveDuplicates().hasSize(plan.size());
+  }
+
+  @Test
+  void parseShard() {
+    assertThat(Plan.parseShard("1/1")).containsExactly(1, 1);
+    assertThat(Plan.parseShard(" 2 / 4 ")).containsExactly(2, 4);
+    for (String invalid : List.of("", "1", "0/4", "5/4", "1/0", "a/b", "1/2/3")) {
+      assertThatThrownBy(() -> Plan.parseShard(invalid))
+          .as(invalid)
+          .isInstanceOf(IllegalArgumentException.class);
+    }
+  }
+}
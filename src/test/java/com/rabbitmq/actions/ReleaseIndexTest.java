@@ -0,0 +1,87 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.rabbitmq.actions.DeleteReleaseAction.Release;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ReleaseIndexTest {
+
+  @TempDir Path directory;
+
+  @Test
+  void writeReadAndMarkDeleted() throws Exception {
+    Path file = directory.resolve("releases.idx");
+    assertThat(ReleaseIndex.open(file)).isNull();
+
+    ReleaseIndex index;
+    try (ReleaseIndex.Writer writer = ReleaseIndex.writer(file)) {
+      writer.add(new Release(3, "url", 1_614_595_078L, "v3", "release 3 é"));
+      writer.add(new Release(2, "url", Release.NO_PUBLICATION, null, null));
+      writer.add(new Release(1, "url", 1_614_595_000L, "v1", ""));
+      index = writer.commit(42);
+    }
+
+    assertThat(index.size()).isEqualTo(3);
+    assertThat(index.fullListingEpoch()).isEqualTo(42);
+    assertThat(index.position(2)).isEqualTo(1);
+    assertThat(index.position(4)).isEqualTo(-1);
+    Release release = index.release(0, "https://api.github.com/repos/o/r/releases/");
+    assertThat(release.id()).isEqualTo(3);
+    assertThat(release.url()).isEqualTo("https://api.github.com/repos/o/r/releases/3");
+    assertThat(release.publicationEpoch()).isEqualTo(1_614_595_078L);
+    assertThat(release.tag()).isEqualTo("v3");
+    assertThat(release.name()).isEqualTo("release 3 é");
+    release = index.release(1, "");
+    assertThat(release.publication()).isNull();
+    assertThat(release.tag()).isNull();
+    assertThat(release.name()).isNull();
+    assertThat(index.release(2, "").name()).isEmpty();
+
+    index.markDeleted(2);
+    assertThat(index.deleted(1)).isTrue();
+    assertThat(index.deleted(0)).isFalse();
+    // the flag is written to the file
+    ReleaseIndex reopened = ReleaseIndex.open(file);
+    assertThat(reopened.deleted(1)).isTrue();
+    assertThat(reopened.deleted(2)).isFalse();
+
+    try (Stream<Path> files = Files.list(directory)) {
+      assertThat(files).containsExactly(file);
+    }
+  }
+
+  @Test
+  void invalidFileShouldBeIgnored() throws Exception {
+    Path file = directory.resolve("releases.idx");
+    Files.writeString(file, "not an index");
+    assertThat(ReleaseIndex.open(file)).isNull();
+  }
+
+  @Test
+  void stringOutsideOfFileShouldBeRejected() throws Exception {
+    Path file = directory.resolve("releases.idx");
+    try (ReleaseIndex.Writer writer = ReleaseIndex.writer(file)) {
+      writer.add(new Release(1, "url", 1_614_595_000L, "v1", "release 1"));
+      writer.commit(42);
+    }
+    // offset of the name of the first record, after the header and the ID, publication and tag
+    int nameOffset = 24 + 16 + 8;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.allocate(4).putInt(0, 1000), nameOffset);
+    }
+    assertThat(ReleaseIndex.open(file)).isNull();
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.rabbitmq.actions.DeleteReleaseAction.Release;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+public class ReleaseTableTest {
+
+  static final String URL = "https://api.github.com/repos/rabbitmq/test/releases/";
+
+  @Test
+  void releasesShouldBeRestoredFromColumns() {
+    ReleaseTable table = new ReleaseTable();
+    int row = table.add(new Release(42, URL + 42, 1_600_000_000L, "v1.0", "1.0"));
+    table.add(new Release(43, "https://example.com/other", Release.NO_PUBLICATION, null, null));
+
+    assertThat(table.size()).isEqualTo(2);
+    Release release = table.release(row);
+    assertThat(release.id()).isEqualTo(42);
+    assertThat(release.url()).isEqualTo(URL + 42);
+    assertThat(release.publicationEpoch()).isEqualTo(1_600_000_000L);
+    assertThat(release.tag()).isEqualTo("v1.0");
+    assertThat(release.name()).isEqualTo("1.0");
+    release = table.asList().get(1);
+    assertThat(release.url()).isEqualTo("https://example.com/other");
+    assertThat(release.publication()).isNull();
+    assertThat(release.tag()).isNull();
+  }
+
+  @Test
+  void sortShouldPutOldestAndUndatedFirst() {
+    ReleaseTable table = new ReleaseTable();
+    long[] epochs = {30, 10, Release.NO_PUBLICATION, 20, 10};
+    for (int i = 0; i < epochs.length; i++) {
+      table.add(new Release(i, URL + i, epochs[i], "t" + i, "n" + i));
+    }
+    BitSet all = new BitSet();
+    all.set(0, epochs.length);
+    assertThat(table.sortedByPublication(all)).containsExactly(2, 1, 4, 3, 0);
+
+    // dates too far apart to be packed with the row
+    table.add(new Release(5, URL + 5, Long.MAX_VALUE, "t5", "n5"));
+    table.add(new Release(6, URL + 6, -5_000_000_000L, "t6", "n6"));
+    all.set(5, 7);
+    assertThat(table.sortedByPublication(all)).containsExactly(2, 6, 1, 4, 3, 0, 5);
+  }
+
+  @Test
+  void retentionShouldKeepNewestReleases() {
+    ReleaseTable table = new ReleaseTable();
+    ReleaseTable.Retention retention = table.new Retention(2);
+    long[] epochs = {3, 1, 5, 4, Release.NO_PUBLICATION, 2};
+    for (int i = 0; i < epochs.length; i++) {
+      retention.add(table.add(new Release(i, URL + i, epochs[i], "t" + i, "n" + i)));
+      if (i == 2) {
+        assertThat(retention.deletionCandidates().stream()).containsExactly(1);
+      }
+    }
+
+    assertThat(retention.kept().stream()).containsExactlyInAnyOrder(2, 3);
+    assertThat(retention.deletionCandidates().stream()).containsExactlyInAnyOrder(0, 1, 4, 5);
+  }
+
+  @Test
+  void retentionShouldKeepTheNewestPublicationDates() {
+    Random random = new Random(42);
+    List<Release> releases =
+        IntStream.range(0, 1000)
+            .mapToObj(i -> new Release(i, URL + i, random.nextInt(500), "t" + i, "n" + i))
+            .toList();
+    long[] newestFirst =
+        releases.stream()
+            .mapToLong(Release::publicationEpoch)
+            .boxed()
+            .sorted(Comparator.reverseOrder())
+            .mapToLong(Long::longValue)
+            .toArray();
+    for (int keepLastN : new int[] {0, 1, 10, 999, 1000, 2000}) {
+      ReleaseTable table = new ReleaseTable();
+      ReleaseTable.Retention retention = table.new Retention(keepLastN);
+      releases.forEach(r -> retention.add(table.add(r)));
+      int kept = Math.min(keepLastN, releases.size());
+      assertThat(retention.kept().cardinality()).isEqualTo(kept);
+      assertThat(retention.deletionCandidates().cardinality()).isEqualTo(releases.size() - kept);
+      assertThat(retention.deletionCandidates().intersects(retention.kept())).isFalse();
+      // ties can go either way, the dates cannot
+      assertThat(retention.kept().stream().mapToLong(table::publicationEpoch).sorted().toArray())
+          .containsExactly(Arrays.stream(newestFirst, 0, kept).sorted().toArray());
+    }
+  }
+}
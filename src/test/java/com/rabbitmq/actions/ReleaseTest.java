@@ -7,9 +7,16 @@ package com.rabbitmq.actions;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import com.rabbitmq.actions.DeleteReleaseAction.GitubRestApiReleaseAccess;
 import com.rabbitmq.actions.DeleteReleaseAction.Release;
+import com.rabbitmq.actions.DeleteReleaseAction.ReleaseTypeAdapter;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 
 public class ReleaseTest {
@@ -92,7 +99,7 @@ public class ReleaseTest {
 
   @Test
   void deserialize() {
-    Release release = DeleteReleaseAction.GSON.fromJson(SAMPLE, Release.class);
+    Release release = DeleteReleaseAction.gson().fromJson(SAMPLE, Release.class);
     assertThat(release.url())
         .isEqualTo(
             "https://api.github.com/repos/rabbitmq/rabbitmq-server-binaries-dev/releases/39045306");
@@ -102,4 +109,59 @@ public class ReleaseTest {
         .isEqualTo(
             ZonedDateTime.parse("2021-03-01T10:37:58Z", DateTimeFormatter.ISO_ZONED_DATE_TIME));
   }
+
+  @Test
+  void decodePageShouldPassReleasesInOrder() throws Exception {
+    String page = "[" + SAMPLE + ", " + SAMPLE.replace("39045306", "39045307") + "]";
+    List<Release> releases = new ArrayList<>();
+    GitubRestApiReleaseAccess.decode(
+        new ByteArrayInputStream(page.getBytes(StandardCharsets.UTF_8)), releases::add);
+    assertThat(releases.stream().mapToLong(Release::id)).containsExactly(39045306L, 39045307L);
+  }
+
+  @Test
+  void deserializeShouldHandleNullValues() {
+    Release release =
+        DeleteReleaseAction.gson()
+            .fromJson(
+                "{\"id\": 1, \"published_at\": null, \"name\": null, \"tag_name\": \"v1\","
+                    + " \"assets\": [{\"id\": 2, \"name\": \"asset\"}]}",
+                Release.class);
+    assertThat(release.id()).isEqualTo(1);
+    assertThat(release.tag()).isEqualTo("v1");
+    assertThat(release.name()).isNull();
+    assertThat(release.publication()).isNull();
+    assertThat(release.publicationEpoch()).isEqualTo(Release.NO_PUBLICATION);
+  }
+
+  @Test
+  void serializeShouldRoundTrip() {
+    Release release = DeleteReleaseAction.gson().fromJson(SAMPLE, Release.class);
+    Release copy =
+        DeleteReleaseAction.gson()
+            .fromJson(DeleteReleaseAction.gson().toJson(release), Release.class);
+    assertThat(copy.id()).isEqualTo(release.id());
+    assertThat(copy.url()).isEqualTo(release.url());
+    assertThat(copy.tag()).isEqualTo(release.tag());
+    assertThat(copy.name()).isEqualTo(release.name());
+    assertThat(copy.publicationEpoch()).isEqualTo(release.publicationEpoch());
+  }
+
+  @Test
+  void epochSecondShouldMatchJavaTime() {
+    for (String timestamp :
+        List.of(
+            "2021-03-01T10:37:58Z",
+            "1970-01-01T00:00:00Z",
+            "1969-12-31T23:59:59Z",
+            "2000-02-29T12:00:00Z",
+            "2100-03-01T00:00:00Z",
+            "2024-12-31T23:59:59Z",
+            "2021-03-01T10:37:58.123Z",
+            "2021-03-01T12:37:58+02:00")) {
+      assertThat(ReleaseTypeAdapter.epochSecond(timestamp))
+          .as(timestamp)
+          .isEqualTo(OffsetDateTime.parse(timestamp).toEpochSecond());
+    }
+  }
 }
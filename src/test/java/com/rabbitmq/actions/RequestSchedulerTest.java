@@ -0,0 +1,161 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.rabbitmq.actions.RequestScheduler.Budget;
+import com.sun.net.httpserver.HttpServer;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+public class RequestSchedulerTest {
+
+  static HttpHeaders headers(Map<String, String> values) {
+    return HttpHeaders.of(
+        values.entrySet().stream()
+            .collect(Collectors.toMap(Map.Entry::getKey, e -> List.of(e.getValue()))),
+        (k, v) -> true);
+  }
+
+  @Test
+  void retryDelay() {
+    AtomicLong now = new AtomicLong(1_000_000);
+    RequestScheduler scheduler = new RequestScheduler(null, 10, now::get);
+
+    assertThat(scheduler.retryDelay(200, headers(Map.of()))).isNull();
+    assertThat(scheduler.retryDelay(403, headers(Map.of()))).isNull();
+    assertThat(scheduler.retryDelay(429, headers(Map.of("retry-after", "30"))))
+        .isEqualTo(Duration.ofSeconds(30));
+    assertThat(scheduler.retryDelay(403, headers(Map.of("retry-after", "5"))))
+        .isEqualTo(Duration.ofSeconds(5));
+    assertThat(
+            scheduler.retryDelay(
+                403, headers(Map.of("x-ratelimit-remaining", "0", "x-ratelimit-reset", "1020"))))
+        .isEqualTo(Duration.ofSeconds(20));
+    assertThat(scheduler.retryDelay(429, headers(Map.of()))).isEqualTo(Duration.ofMinutes(1));
+  }
+
+  @Test
+  void budgetShouldLetRequestsGoFreelyAboveLowBudget() {
+    AtomicLong now = new AtomicLong(1_000_000);
+    RequestScheduler scheduler = new RequestScheduler(null, 100, now::get);
+    Budget budget = scheduler.budget("core");
+
+    // 5000 requests per hour, as with a personal access token
+    budget.update(headers(Map.of("x-ratelimit-remaining", "5000", "x-ratelimit-reset", "4600")));
+    for (int i = 0; i < 4800; i++) {
+      assertThat(budget.tryAcquire()).isZero();
+    }
+    assertThat(budget.remaining()).isEqualTo(200);
+    // close to the reserve, the rest is spread until the reset
+    for (int i = 0; i < 10; i++) {
+      assertThat(budget.tryAcquire()).isZero();
+    }
+    assertThat(budget.tryAcquire()).isPositive();
+  }
+
+  @Test
+  void budgetShouldLimitFirstRoundToBurst() {
+    AtomicLong now = new AtomicLong(1_000_000);
+    RequestScheduler scheduler = new RequestScheduler(null, 10, now::get);
+    Budget budget = scheduler.budget("core");
+
+    for (int i = 0; i < 10; i++) {
+      assertThat(budget.tryAcquire()).isZero();
+    }
+    // the budget is not known yet
+    assertThat(budget.tryAcquire()).isPositive();
+
+    budget.update(headers(Map.of("x-ratelimit-remaining", "1000", "x-ratelimit-reset", "4600")));
+    for (int i = 0; i < 100; i++) {
+      assertThat(budget.tryAcquire()).isZero();
+    }
+
+    // no rate limit headers, nothing to pace after the first response
+    Budget unlimited = scheduler.budget("other");
+    for (int i = 0; i < 10; i++) {
+      assertThat(unlimited.tryAcquire()).isZero();
+    }
+    assertThat(unlimited.tryAcquire()).isPositive();
+    unlimited.update(headers(Map.of()));
+    for (int i = 0; i < 100; i++) {
+      assertThat(unlimited.tryAcquire()).isZero();
+    }
+  }
+
+  @Test
+  void budgetShouldKeepReserveAndPaceRequestsWhenLow() {
+    AtomicLong now = new AtomicLong(1_000_000);
+    RequestScheduler scheduler = new RequestScheduler(null, 10, now::get);
+    Budget budget = scheduler.budget("core");
+
+    // unknown budget, no pacing
+    assertThat(budget.tryAcquire()).isZero();
+
+    budget.update(headers(Map.of("x-ratelimit-remaining", "15", "x-ratelimit-reset", "1100")));
+    for (int i = 0; i < 5; i++) {
+      assertThat(budget.tryAcquire()).isZero();
+    }
+    assertThat(budget.remaining()).isEqualTo(10);
+    // only the reserve is left, wait for the reset
+    assertThat(budget.tryAcquire()).isEqualTo(100_000);
+
+    now.set(1_100_000);
+    assertThat(budget.tryAcquire()).isZero();
+
+    budget.update(headers(Map.of("x-ratelimit-remaining", "60", "x-ratelimit-reset", "1200")));
+    // low budget, the burst goes through, then requests are spread until the reset
+    for (int i = 0; i < 10; i++) {
+      assertThat(budget.tryAcquire()).isZero();
+    }
+    assertThat(budget.tryAcquire()).isEqualTo(2_500);
+    now.addAndGet(2_500);
+    assertThat(budget.tryAcquire()).isZero();
+  }
+
+  @Test
+  void sendShouldRetryAfterRateLimit() throws Exception {
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    AtomicInteger requests = new AtomicInteger();
+    server.createContext(
+        "/",
+        exchange -> {
+          if (requests.incrementAndGet() == 1) {
+            exchange.getResponseHeaders().add("retry-after", "0");
+            exchange.sendResponseHeaders(429, -1);
+          } else {
+            exchange.sendResponseHeaders(204, -1);
+          }
+          exchange.close();
+        });
+    server.start();
+    try (HttpClient client = HttpClient.newHttpClient()) {
+      RequestScheduler scheduler = new RequestScheduler(client, 10);
+      HttpRequest request =
+          HttpRequest.newBuilder()
+              .uri(URI.create("http://localhost:" + server.getAddress().getPort() + "/"))
+              .build();
+      HttpResponse<Void> response = scheduler.send(request, BodyHandlers.discarding());
+      assertThat(response.statusCode()).isEqualTo(204);
+      assertThat(requests).hasValue(2);
+    } finally {
+      server.stop(0);
+    }
+  }
+}
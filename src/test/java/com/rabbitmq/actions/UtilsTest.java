@@ -0,0 +1,52 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+public class UtilsTest {
+
+  @Test
+  void sampleShouldCountItemsNotLogged() {
+    List<String> items = IntStream.range(0, 25).mapToObj(i -> "r" + i).toList();
+    assertThat(Utils.sample(items, Function.identity()))
+        .isEqualTo("r0, r1, r2, r3, r4, r5, r6, r7, r8, r9, and 15 more");
+    assertThat(Utils.sample(items.subList(0, 3), Function.identity())).isEqualTo("r0, r1, r2");
+    assertThat(Utils.sample(items.subList(0, 3), 100, Function.identity()))
+        .isEqualTo("r0, r1, r2, and 97 more");
+    assertThat(Utils.sample(List.<String>of(), Function.identity())).isEmpty();
+  }
+
+  @Test
+  void groupShouldBeLoggedOnlyInVerboseMode() {
+    PrintStream out = System.out;
+    ByteArrayOutputStream captured = new ByteArrayOutputStream();
+    Utils.flushLogs();
+    System.setOut(new PrintStream(captured, true, StandardCharsets.UTF_8));
+    try {
+      Utils.logPrefix("[repo] ");
+      Utils.verbose(false);
+      Utils.logGroup("Not logged", List.of("a"), Function.identity());
+      Utils.verbose(true);
+      Utils.logGroup("Releases", List.of("a", "b"), Function.identity());
+      Utils.flushLogs();
+    } finally {
+      Utils.verbose(false);
+      Utils.logPrefix("");
+      System.setOut(out);
+    }
+    assertThat(captured.toString(StandardCharsets.UTF_8).lines())
+        .containsExactly("::group::[repo] Releases (2)", "[repo] a", "[repo] b", "::endgroup::");
+  }
+}